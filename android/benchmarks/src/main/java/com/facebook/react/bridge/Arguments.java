@@ -0,0 +1,14 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stand-in for the React Native bridge class of the same name, creating the stand-in native containers.
+ */
+public class Arguments {
+    public static WritableMap createMap() {
+        return new WritableNativeMap();
+    }
+
+    public static WritableArray createArray() {
+        return new WritableNativeArray();
+    }
+}
@@ -0,0 +1,108 @@
+package com.facebook.react.bridge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A WritableArray backed by a plain Java list, standing in for the JNI backed native array.
+ */
+public class JavaOnlyArray implements WritableArray {
+    private final List<Object> values = new ArrayList<>();
+
+    static ReadableType typeOf(Object value) {
+        if (value == null)
+            return ReadableType.Null;
+        if (value instanceof Boolean)
+            return ReadableType.Boolean;
+        if (value instanceof Number)
+            return ReadableType.Number;
+        if (value instanceof String)
+            return ReadableType.String;
+        if (value instanceof ReadableMap)
+            return ReadableType.Map;
+        if (value instanceof ReadableArray)
+            return ReadableType.Array;
+        throw new IllegalStateException("Not a bridge value: " + value.getClass());
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return values.get(index) == null;
+    }
+
+    @Override
+    public boolean getBoolean(int index) {
+        return (Boolean) values.get(index);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return ((Number) values.get(index)).doubleValue();
+    }
+
+    @Override
+    public int getInt(int index) {
+        return ((Number) values.get(index)).intValue();
+    }
+
+    @Override
+    public String getString(int index) {
+        return (String) values.get(index);
+    }
+
+    @Override
+    public ReadableArray getArray(int index) {
+        return (ReadableArray) values.get(index);
+    }
+
+    @Override
+    public ReadableMap getMap(int index) {
+        return (ReadableMap) values.get(index);
+    }
+
+    @Override
+    public ReadableType getType(int index) {
+        return typeOf(values.get(index));
+    }
+
+    @Override
+    public void pushNull() {
+        values.add(null);
+    }
+
+    @Override
+    public void pushBoolean(boolean value) {
+        values.add(value);
+    }
+
+    @Override
+    public void pushDouble(double value) {
+        values.add(value);
+    }
+
+    @Override
+    public void pushInt(int value) {
+        // the bridge only carries doubles
+        values.add((double) value);
+    }
+
+    @Override
+    public void pushString(String value) {
+        values.add(value);
+    }
+
+    @Override
+    public void pushArray(WritableArray array) {
+        values.add(array);
+    }
+
+    @Override
+    public void pushMap(WritableMap map) {
+        values.add(map);
+    }
+}
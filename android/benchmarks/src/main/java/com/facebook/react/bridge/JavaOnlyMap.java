@@ -0,0 +1,113 @@
+package com.facebook.react.bridge;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A WritableMap backed by a plain Java map, standing in for the JNI backed native map.
+ */
+public class JavaOnlyMap implements WritableMap {
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public boolean hasKey(String name) {
+        return values.containsKey(name);
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return values.get(name) == null;
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        return (Boolean) values.get(name);
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return ((Number) values.get(name)).doubleValue();
+    }
+
+    @Override
+    public int getInt(String name) {
+        return ((Number) values.get(name)).intValue();
+    }
+
+    @Override
+    public String getString(String name) {
+        return (String) values.get(name);
+    }
+
+    @Override
+    public ReadableArray getArray(String name) {
+        return (ReadableArray) values.get(name);
+    }
+
+    @Override
+    public ReadableMap getMap(String name) {
+        return (ReadableMap) values.get(name);
+    }
+
+    @Override
+    public ReadableType getType(String name) {
+        return JavaOnlyArray.typeOf(values.get(name));
+    }
+
+    @Override
+    public ReadableMapKeySetIterator keySetIterator() {
+        final Iterator<String> keys = values.keySet().iterator();
+        return new ReadableMapKeySetIterator() {
+            @Override
+            public boolean hasNextKey() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public String nextKey() {
+                return keys.next();
+            }
+        };
+    }
+
+    @Override
+    public void putNull(String key) {
+        values.put(key, null);
+    }
+
+    @Override
+    public void putBoolean(String key, boolean value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void putDouble(String key, double value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void putInt(String key, int value) {
+        // the bridge only carries doubles
+        values.put(key, (double) value);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void putArray(String key, WritableArray value) {
+        values.put(key, value);
+    }
+
+    @Override
+    public void putMap(String key, WritableMap value) {
+        values.put(key, value);
+    }
+}
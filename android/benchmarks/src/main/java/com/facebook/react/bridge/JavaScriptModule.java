@@ -0,0 +1,7 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stand-in for the React Native bridge type of the same name.
+ */
+public interface JavaScriptModule {
+}
@@ -0,0 +1,22 @@
+package com.facebook.react.bridge;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Stand-in for the React Native context: every JS module it hands out silently drops its calls, so code
+ * emitting events can be measured without a JS runtime.
+ */
+public class ReactContext {
+    private static final InvocationHandler IGNORE = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+        }
+    };
+
+    public <T extends JavaScriptModule> T getJSModule(Class<T> moduleInterface) {
+        return moduleInterface.cast(Proxy.newProxyInstance(moduleInterface.getClassLoader(), new Class<?>[]{moduleInterface}, IGNORE));
+    }
+}
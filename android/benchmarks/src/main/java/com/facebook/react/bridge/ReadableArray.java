@@ -0,0 +1,24 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stand-in for the React Native bridge type of the same name, declaring only what the module uses.
+ */
+public interface ReadableArray {
+    int size();
+
+    boolean isNull(int index);
+
+    boolean getBoolean(int index);
+
+    double getDouble(int index);
+
+    int getInt(int index);
+
+    String getString(int index);
+
+    ReadableArray getArray(int index);
+
+    ReadableMap getMap(int index);
+
+    ReadableType getType(int index);
+}
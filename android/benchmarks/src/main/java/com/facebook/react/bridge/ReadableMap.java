@@ -0,0 +1,26 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stand-in for the React Native bridge type of the same name, declaring only what the module uses.
+ */
+public interface ReadableMap {
+    boolean hasKey(String name);
+
+    boolean isNull(String name);
+
+    boolean getBoolean(String name);
+
+    double getDouble(String name);
+
+    int getInt(String name);
+
+    String getString(String name);
+
+    ReadableArray getArray(String name);
+
+    ReadableMap getMap(String name);
+
+    ReadableType getType(String name);
+
+    ReadableMapKeySetIterator keySetIterator();
+}
@@ -0,0 +1,10 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stand-in for the React Native bridge type of the same name, so the converters run on a plain JVM.
+ */
+public interface ReadableMapKeySetIterator {
+    boolean hasNextKey();
+
+    String nextKey();
+}
@@ -0,0 +1,13 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stand-in for the React Native bridge type of the same name, so the converters run on a plain JVM.
+ */
+public enum ReadableType {
+    Null,
+    Boolean,
+    Number,
+    String,
+    Map,
+    Array
+}
@@ -0,0 +1,7 @@
+package com.facebook.react.bridge;
+
+/**
+ * The real class is backed by JNI; on a plain JVM it is a JavaOnlyArray, so the converters run unchanged.
+ */
+public class WritableNativeArray extends JavaOnlyArray {
+}
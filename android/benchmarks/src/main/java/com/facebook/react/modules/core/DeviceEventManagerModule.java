@@ -0,0 +1,12 @@
+package com.facebook.react.modules.core;
+
+import com.facebook.react.bridge.JavaScriptModule;
+
+/**
+ * Stand-in for the React Native module of the same name.
+ */
+public class DeviceEventManagerModule {
+    public interface RCTDeviceEventEmitter extends JavaScriptModule {
+        void emit(String eventName, Object data);
+    }
+}
@@ -0,0 +1,81 @@
+package me.fraserxu.rncouchbaselite.benchmarks;
+
+import com.couchbase.lite.Attachment;
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.Document;
+import com.couchbase.lite.Manager;
+import com.couchbase.lite.UnsavedRevision;
+import com.facebook.react.bridge.ReactContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import me.fraserxu.rncouchbaselite.AttachmentCopy;
+import me.fraserxu.rncouchbaselite.TransferProgress;
+
+/**
+ * Time to copy an attachment out of the blob store to a file, as copyAttachment does, including progress reporting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentCopyBenchmark {
+    @Param({"65536", "1048576", "16777216"})
+    public int size;
+
+    private File directory;
+    private Manager manager;
+    private Attachment attachment;
+    private String target;
+    private ReactContext context;
+
+    @Setup
+    public void setUp() throws IOException, CouchbaseLiteException {
+        directory = Support.createScratchDirectory("attachment-copy");
+        manager = Support.openManager(directory);
+        Database database = manager.getDatabase("bench");
+
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+
+        Document doc = database.getDocument("attachments");
+        UnsavedRevision revision = doc.createRevision();
+        revision.setAttachment("blob", "application/octet-stream", new ByteArrayInputStream(content));
+        revision.save();
+
+        attachment = doc.getCurrentRevision().getAttachment("blob");
+        target = new File(directory, "copy").getPath();
+        context = new ReactContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+        Support.delete(directory);
+    }
+
+    @Benchmark
+    public void copy() throws IOException, CouchbaseLiteException {
+        AttachmentCopy.copy(attachment, target, new TransferProgress(context, "copy", target, attachment.getLength()));
+    }
+}
@@ -0,0 +1,68 @@
+package me.fraserxu.rncouchbaselite.benchmarks;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.fraserxu.rncouchbaselite.ReactNativeJson;
+
+/**
+ * Throughput of the ReactNativeJson converters, in documents per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+    @Param({"small", "typical", "large"})
+    public String shape;
+
+    private Map<String, Object> properties;
+    private ReadableMap readable;
+    private JSONObject json;
+
+    @Setup
+    public void setUp() throws JSONException {
+        properties = Documents.create(shape, 42);
+        readable = ReactNativeJson.convertPropertiesToMap(properties);
+        json = ReactNativeJson.convertMapToJson(readable);
+    }
+
+    @Benchmark
+    public WritableMap propertiesToMap() {
+        return ReactNativeJson.convertPropertiesToMap(properties);
+    }
+
+    @Benchmark
+    public Map<String, Object> mapToProperties() {
+        return ReactNativeJson.convertMapToProperties(readable);
+    }
+
+    @Benchmark
+    public WritableMap jsonToMap() throws JSONException {
+        return ReactNativeJson.convertJsonToMap(json);
+    }
+
+    @Benchmark
+    public JSONObject mapToJson() throws JSONException {
+        return ReactNativeJson.convertMapToJson(readable);
+    }
+}
@@ -0,0 +1,131 @@
+package me.fraserxu.rncouchbaselite.benchmarks;
+
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.Manager;
+import com.couchbase.lite.QueryEnumerator;
+import com.couchbase.lite.TransactionalTask;
+import com.couchbase.lite.View;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.fraserxu.rncouchbaselite.BulkSave;
+import me.fraserxu.rncouchbaselite.NativeViews;
+import me.fraserxu.rncouchbaselite.ReactNativeJson;
+import me.fraserxu.rncouchbaselite.ViewQueries;
+
+/**
+ * Throughput of the document paths, in documents (or rows) per second:
+ *
+ * - bulkSave: batches of typical documents from the bridge saved through BulkSave, the bulkSave code path,
+ *   into a database recreated for every iteration so each one starts from the same state
+ * - query: a page of a native view with include_docs, converted for the bridge as queryView does
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentBenchmark {
+    private static final int BATCH_SIZE = 1000;
+    private static final int QUERY_DOCUMENTS = 10000;
+    private static final int PAGE_SIZE = 500;
+
+    private File directory;
+    private Manager manager;
+    private Database insertDatabase;
+    private View view;
+    private ReadableArray batch;
+    private Map<String, Object> queryOptions;
+
+    @Setup
+    public void setUp() throws IOException, CouchbaseLiteException {
+        directory = Support.createScratchDirectory("documents");
+        manager = Support.openManager(directory);
+
+        WritableArray docs = Arguments.createArray();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Map<String, Object> doc = Documents.create("typical", i);
+            doc.remove("_id");
+            docs.pushMap(ReactNativeJson.convertPropertiesToMap(doc));
+        }
+        batch = docs;
+
+        final Database queryDatabase = manager.getDatabase("query");
+        queryDatabase.runInTransaction(new TransactionalTask() {
+            @Override
+            public boolean run() {
+                try {
+                    for (int i = 0; i < QUERY_DOCUMENTS; i++) {
+                        Map<String, Object> doc = Documents.create("typical", i);
+                        queryDatabase.getDocument((String) doc.get("_id")).putProperties(doc);
+                    }
+                    return true;
+                } catch (CouchbaseLiteException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+
+        Map<String, Object> mapper = new HashMap<>();
+        mapper.put("field", "customer.name");
+        mapper.put("type", "order");
+        Map<String, Object> spec = new HashMap<>();
+        spec.put("map", mapper);
+        view = NativeViews.bind(queryDatabase, "bench/byCustomer", spec);
+        view.updateIndex();
+
+        queryOptions = new HashMap<>();
+        queryOptions.put("limit", PAGE_SIZE);
+        queryOptions.put("include_docs", true);
+    }
+
+    @Setup(Level.Iteration)
+    public void recreateInsertDatabase() throws CouchbaseLiteException {
+        Database existing = manager.getExistingDatabase("insert");
+        if (existing != null)
+            existing.delete();
+        insertDatabase = manager.getDatabase("insert");
+    }
+
+    @TearDown
+    public void tearDown() {
+        manager.close();
+        Support.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public WritableArray bulkSave() throws BulkSave.RolledBackException {
+        return BulkSave.save(insertDatabase, batch, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_SIZE)
+    public WritableArray query() throws CouchbaseLiteException {
+        QueryEnumerator rows = ViewQueries.createQuery(view, queryOptions).run();
+        return ViewQueries.nextPage(rows, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,100 @@
+package me.fraserxu.rncouchbaselite.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Document shapes the benchmarks run on, generated from a seed so every run sees the same data.
+ *
+ * - small: a handful of flat fields
+ * - typical: an order with a nested customer, a few line items and tags
+ * - large: an order with 500 line items and a 200 entry history
+ */
+final class Documents {
+    private static final String[] NAMES = {"Ada Lovelace", "Grace Hopper", "Alan Turing", "Edsger Dijkstra", "Barbara Liskov", "Donald Knuth"};
+    private static final String[] TAGS = {"priority", "gift", "wholesale", "returning", "express", "fragile"};
+
+    private Documents() {
+    }
+
+    static Map<String, Object> create(String shape, long seed) {
+        Random random = new Random(seed);
+        switch (shape) {
+            case "small":
+                return small(random, seed);
+            case "typical":
+                return order(random, seed, 5, 0);
+            case "large":
+                return order(random, seed, 500, 200);
+            default:
+                throw new IllegalArgumentException("Unknown document shape: " + shape);
+        }
+    }
+
+    private static Map<String, Object> small(Random random, long seed) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("_id", "person-" + seed);
+        doc.put("type", "person");
+        doc.put("name", NAMES[random.nextInt(NAMES.length)]);
+        doc.put("age", 18 + random.nextInt(60));
+        doc.put("active", random.nextBoolean());
+        return doc;
+    }
+
+    private static Map<String, Object> order(Random random, long seed, int itemCount, int historyCount) {
+        Map<String, Object> address = new HashMap<>();
+        address.put("street", random.nextInt(999) + " Main Street");
+        address.put("city", "Springfield");
+        address.put("zip", String.valueOf(10000 + random.nextInt(89999)));
+
+        String name = NAMES[random.nextInt(NAMES.length)];
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("name", name);
+        customer.put("email", name.toLowerCase().replace(' ', '.') + "@example.com");
+        customer.put("address", address);
+
+        List<Object> items = new ArrayList<>(itemCount);
+        double total = 0;
+        for (int i = 0; i < itemCount; i++) {
+            Map<String, Object> item = new HashMap<>();
+            int quantity = 1 + random.nextInt(5);
+            double price = random.nextInt(10000) / 100.0;
+            item.put("sku", "SKU-" + random.nextInt(100000));
+            item.put("quantity", quantity);
+            item.put("price", price);
+            items.add(item);
+            total += quantity * price;
+        }
+
+        List<Object> tags = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tags.add(TAGS[random.nextInt(TAGS.length)]);
+        }
+
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("_id", "order-" + seed);
+        doc.put("type", "order");
+        doc.put("customer", customer);
+        doc.put("items", items);
+        doc.put("tags", tags);
+        doc.put("total", total);
+        doc.put("createdAt", 1500000000000L + random.nextInt(1000000000));
+        doc.put("paid", random.nextBoolean());
+        doc.put("note", null);
+
+        if (historyCount > 0) {
+            List<Object> history = new ArrayList<>(historyCount);
+            for (int i = 0; i < historyCount; i++) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("status", i % 2 == 0 ? "updated" : "viewed");
+                entry.put("at", 1500000000000L + i * 60000L);
+                history.add(entry);
+            }
+            doc.put("history", history);
+        }
+        return doc;
+    }
+}
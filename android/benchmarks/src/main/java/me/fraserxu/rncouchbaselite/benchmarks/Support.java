@@ -0,0 +1,41 @@
+package me.fraserxu.rncouchbaselite.benchmarks;
+
+import com.couchbase.lite.JavaContext;
+import com.couchbase.lite.Manager;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Set up shared by the benchmarks: Couchbase Lite managers in a scratch directory.
+ */
+final class Support {
+    private Support() {
+    }
+
+    static File createScratchDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        if (!directory.delete() || !directory.mkdirs())
+            throw new IOException("Could not create " + directory);
+        return directory;
+    }
+
+    static Manager openManager(final File directory) throws IOException {
+        return new Manager(new JavaContext() {
+            @Override
+            public File getFilesDir() {
+                return directory;
+            }
+        }, Manager.DEFAULT_OPTIONS);
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
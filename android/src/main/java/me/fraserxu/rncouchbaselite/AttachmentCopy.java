@@ -0,0 +1,89 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.Attachment;
+import com.couchbase.lite.CouchbaseLiteException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+/**
+ * Copies attachments out of the blob store to a file. Plain blobs are copied with FileChannel.transferTo,
+ * anything else is streamed through Attachment.getContent().
+ */
+public class AttachmentCopy {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    public static void copy(Attachment att, String path, TransferProgress progress) throws CouchbaseLiteException, IOException {
+        File blob = blobFile(att);
+        if (blob != null)
+            transfer(blob, path, progress);
+        else
+            stream(att, path, progress);
+        progress.finish();
+    }
+
+    /**
+     * The file holding the attachment in the blob store, if it can be copied as is.
+     * Encrypted databases have no content URL and encoded (gzipped) attachments need decoding on the way out.
+     */
+    private static File blobFile(Attachment att) {
+        URL url = att.getContentURL();
+        if (url == null || !"file".equals(url.getProtocol()))
+            return null;
+
+        Map<String, Object> metadata = att.getMetadata();
+        if (metadata != null && metadata.get("encoding") != null)
+            return null;
+
+        File file = new File(url.getPath());
+        return file.isFile() ? file : null;
+    }
+
+    private static void transfer(File blob, String path, TransferProgress progress) throws IOException {
+        FileChannel in = new FileInputStream(blob).getChannel();
+        try {
+            FileChannel out = new FileOutputStream(path).getChannel();
+            try {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    long transferred = in.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), out);
+                    if (transferred <= 0)
+                        throw new IOException("Copy of " + blob + " stopped after " + position + " of " + size + " bytes");
+                    position += transferred;
+                    progress.add(transferred);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void stream(Attachment att, String path, TransferProgress progress) throws CouchbaseLiteException, IOException {
+        InputStream in = att.getContent();
+        try {
+            FileOutputStream out = new FileOutputStream(path);
+            try {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    progress.add(bytesRead);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
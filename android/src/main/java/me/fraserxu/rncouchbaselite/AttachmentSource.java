@@ -0,0 +1,92 @@
+package me.fraserxu.rncouchbaselite;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * An open stream over an attachment's source: a file path, a file:// or content:// URI, or any URL
+ * java.net.URL can open. The length is -1 when the source does not report one.
+ */
+public class AttachmentSource {
+    public final InputStream input;
+    public final long length;
+
+    private AttachmentSource(InputStream input, long length) {
+        this.input = input;
+        this.length = length;
+    }
+
+    public static AttachmentSource open(ContentResolver contentResolver, String sourceUri) throws IOException {
+        if (sourceUri.startsWith("/") || sourceUri.startsWith("file:/")) {
+            String path = sourceUri.replace("file://", "/")
+                    .replace("file:/", "/");
+            File file = new File(path);
+            return new AttachmentSource(new FileInputStream(file), file.length());
+        } else if (sourceUri.startsWith("content://")) {
+            Uri uri = Uri.parse(sourceUri);
+            long length = contentLength(contentResolver, uri);
+            InputStream input = contentResolver.openInputStream(uri);
+            if (input == null)
+                throw new IOException("Could not open " + sourceUri);
+            return new AttachmentSource(input, length);
+        } else {
+            URLConnection urlConnection = new URL(sourceUri).openConnection();
+            return new AttachmentSource(urlConnection.getInputStream(), urlConnection.getContentLength());
+        }
+    }
+
+    /**
+     * The stream, reporting the bytes read from it to progress.
+     */
+    public InputStream withProgress(final TransferProgress progress) {
+        return new FilterInputStream(input) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1)
+                    progress.add(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                int bytesRead = super.read(buffer, offset, count);
+                if (bytesRead > 0)
+                    progress.add(bytesRead);
+                return bytesRead;
+            }
+        };
+    }
+
+    public void close() {
+        try {
+            input.close();
+        } catch (IOException e) {
+            // nothing left to read from it anyway
+        }
+    }
+
+    private static long contentLength(ContentResolver contentResolver, Uri uri) {
+        try {
+            AssetFileDescriptor descriptor = contentResolver.openAssetFileDescriptor(uri, "r");
+            if (descriptor == null)
+                return -1;
+            try {
+                return descriptor.getLength();
+            } finally {
+                descriptor.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
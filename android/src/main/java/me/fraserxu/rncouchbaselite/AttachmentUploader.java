@@ -0,0 +1,181 @@
+package me.fraserxu.rncouchbaselite;
+
+import android.content.ContentResolver;
+
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static me.fraserxu.rncouchbaselite.ReactNativeJson.convertJsonToMap;
+
+/**
+ * Streams attachments to an HTTP endpoint.
+ *
+ * Bodies are streamed with fixed-length (or chunked, when the size is unknown) streaming mode so
+ * HttpURLConnection never buffers a whole file in memory. Failed attempts caused by I/O errors or 5xx
+ * responses are retried with exponential backoff, re-opening the source each time.
+ */
+public class AttachmentUploader {
+    private static final String TAG = "ReactCBLite";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final int TIMEOUT_MS = 100000;
+
+    private final ReactContext context;
+    private final ContentResolver contentResolver;
+
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    public AttachmentUploader(ReactContext context) {
+        this.context = context;
+        this.contentResolver = context.getContentResolver();
+    }
+
+    /**
+     * Uploads on the calling thread and settles the promise once done.
+     */
+    public void upload(String method, String authHeader, String sourceUri, String targetUri, String contentType, Promise promise) {
+        UploadResult uploadResult = uploadWithRetry(method, authHeader, sourceUri, targetUri, contentType);
+        resolve(uploadResult, promise);
+    }
+
+    private UploadResult uploadWithRetry(String method, String authHeader, String sourceUri, String targetUri, String contentType) {
+        Log.i(TAG, "Uploading attachment '" + sourceUri + "' to '" + targetUri + "'");
+
+        long backoff = INITIAL_BACKOFF_MS;
+        UploadResult result = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                result = uploadOnce(method, authHeader, sourceUri, targetUri, contentType);
+                if (result.statusCode < 500)
+                    return result;
+
+                Log.w(TAG, "Upload of '" + sourceUri + "' failed with status " + result.statusCode + " (attempt " + attempt + ")");
+            } catch (Exception e) {
+                Log.w(TAG, "Upload of '" + sourceUri + "' failed (attempt " + attempt + ")", e);
+                result = new UploadResult(-1, "Failed to save attachment " + e.getMessage());
+            }
+
+            if (attempt < MAX_ATTEMPTS) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                backoff *= 2;
+            }
+        }
+
+        Log.e(TAG, "Failed to save attachment '" + sourceUri + "': " + result.response);
+        return result;
+    }
+
+    private UploadResult uploadOnce(String method, String authHeader, String sourceUri, String targetUri, String contentType) throws IOException {
+        AttachmentSource source = AttachmentSource.open(contentResolver, sourceUri);
+        long length = source.length;
+        InputStream input = source.input;
+
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(targetUri).openConnection();
+            try {
+                conn.setRequestProperty("Content-Type", contentType);
+                conn.setRequestProperty("Authorization", authHeader);
+                conn.setReadTimeout(TIMEOUT_MS);
+                conn.setConnectTimeout(TIMEOUT_MS);
+                conn.setRequestMethod(method);
+                conn.setDoInput(true);
+                conn.setDoOutput(true);
+
+                if (length >= 0 && length <= Integer.MAX_VALUE)
+                    conn.setFixedLengthStreamingMode((int) length);
+                else
+                    conn.setChunkedStreamingMode(BUFFER_SIZE);
+
+                TransferProgress progress = new TransferProgress(context, "upload", targetUri, length);
+                byte[] buffer = buffers.get();
+                OutputStream os = conn.getOutputStream();
+                try {
+                    int bytesRead;
+                    while ((bytesRead = input.read(buffer)) != -1) {
+                        os.write(buffer, 0, bytesRead);
+                        progress.add(bytesRead);
+                    }
+                } finally {
+                    os.close();
+                }
+                progress.finish();
+
+                int responseCode = conn.getResponseCode();
+                InputStream responseStream = responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream();
+
+                StringBuilder responseText = new StringBuilder();
+                if (responseStream != null) {
+                    BufferedReader br = new BufferedReader(new InputStreamReader(responseStream));
+                    try {
+                        String line;
+                        while ((line = br.readLine()) != null) {
+                            responseText.append(line);
+                        }
+                    } finally {
+                        br.close();
+                    }
+                }
+
+                return new UploadResult(responseCode, responseText.toString());
+            } finally {
+                conn.disconnect();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void resolve(UploadResult uploadResult, Promise promise) {
+        int responseCode = uploadResult.statusCode;
+        WritableMap map = Arguments.createMap();
+        map.putInt("statusCode", responseCode);
+
+        if (responseCode >= 200 && responseCode < 300) {
+            try {
+                JSONObject jsonObject = new JSONObject(uploadResult.response);
+                map.putMap("resp", convertJsonToMap(jsonObject));
+                promise.resolve(map);
+            } catch (JSONException e) {
+                promise.reject("cbl error", uploadResult.response);
+                Log.e(TAG, "Failed to parse response from clb: " + uploadResult.response, e);
+            }
+        } else {
+            promise.reject("cbl error", uploadResult.response);
+        }
+    }
+
+    private static class UploadResult {
+        public final int statusCode;
+        public final String response;
+
+        public UploadResult(int statusCode, String response) {
+            this.statusCode = statusCode;
+            this.response = response;
+        }
+    }
+}
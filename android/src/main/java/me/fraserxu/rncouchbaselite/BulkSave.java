@@ -0,0 +1,147 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.Document;
+import com.couchbase.lite.SavedRevision;
+import com.couchbase.lite.Status;
+import com.couchbase.lite.TransactionalTask;
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.fraserxu.rncouchbaselite.ReactNativeJson.convertMapToProperties;
+
+/**
+ * Saves a batch of documents in as few transactions as possible, reporting {id, rev} or {id, status} per document.
+ *
+ * A failed save ends its nested transaction unsuccessfully, which rolls back the outer one too, so documents are
+ * committed in chunks of CHUNK_SIZE and a failure only reruns its own chunk without the failing document. Conflicts
+ * are detected before anything is written, so they are skipped without a rerun. With allOrNothing the whole batch
+ * is one transaction and any failure rolls it back.
+ */
+public class BulkSave {
+    private static final String TAG = "ReactCBLite";
+    public static final int CHUNK_SIZE = 100;
+
+    private static final int COMMITTED = -1;
+    private static final int ROLLED_BACK = -2;
+
+    /**
+     * Thrown when the batch was rolled back, with allOrNothing or for a reason no document accounts for.
+     */
+    public static class RolledBackException extends Exception {
+        private RolledBackException(String message) {
+            super(message);
+        }
+    }
+
+    public static WritableArray save(Database database, ReadableArray docs, boolean allOrNothing) throws RolledBackException {
+        List<Map<String, Object>> props = new ArrayList<>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            props.add(convertMapToProperties(docs.getMap(i)));
+        }
+
+        Map<Integer, Integer> failures = new HashMap<>();
+        Map<Integer, SavedRevision> saved = new HashMap<>();
+        int chunkSize = allOrNothing ? Math.max(1, props.size()) : CHUNK_SIZE;
+        for (int from = 0; from < props.size(); from += chunkSize) {
+            int to = Math.min(props.size(), from + chunkSize);
+            int failed;
+            while ((failed = saveChunk(database, props, from, to, allOrNothing, failures, saved)) != COMMITTED) {
+                if (allOrNothing || failed == ROLLED_BACK) {
+                    String failedId = failed < 0 ? null : idOf(docs.getMap(failed));
+                    throw new RolledBackException("bulkSave rolled back, failed to save document " + failedId);
+                }
+                Log.i(TAG, "bulkSave rerunning a chunk without document at index " + failed);
+            }
+        }
+
+        WritableArray results = Arguments.createArray();
+        for (int i = 0; i < docs.size(); i++) {
+            WritableMap result = Arguments.createMap();
+            SavedRevision revision = saved.get(i);
+            result.putString("id", revision != null ? revision.getDocument().getId() : idOf(docs.getMap(i)));
+            if (revision != null) {
+                result.putString("rev", revision.getId());
+            } else {
+                Integer status = failures.get(i);
+                result.putInt("status", status != null ? status : Status.INTERNAL_SERVER_ERROR);
+            }
+            results.pushMap(result);
+        }
+        return results;
+    }
+
+    /**
+     * Saves props[from, to) in one transaction, skipping documents already in failures. Returns COMMITTED, the
+     * index of the document that made the transaction roll back, or ROLLED_BACK if none did.
+     */
+    private static int saveChunk(final Database database, final List<Map<String, Object>> props, final int from, final int to,
+                                 final boolean stopOnConflict, final Map<Integer, Integer> failures, final Map<Integer, SavedRevision> saved) {
+        final int[] failed = {ROLLED_BACK};
+        boolean committed = database.runInTransaction(new TransactionalTask() {
+            @Override
+            public boolean run() {
+                for (int i = from; i < to; i++) {
+                    if (failures.containsKey(i))
+                        continue;
+
+                    Map<String, Object> properties = props.get(i);
+                    Document doc = documentFor(database, properties);
+                    if (isConflict(doc, properties)) {
+                        failures.put(i, Status.CONFLICT);
+                        if (stopOnConflict) {
+                            failed[0] = i;
+                            return false;
+                        }
+                        continue;
+                    }
+
+                    try {
+                        saved.put(i, doc.putProperties(properties));
+                    } catch (CouchbaseLiteException e) {
+                        failures.put(i, e.getCBLStatus().getCode());
+                        failed[0] = i;
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+
+        if (committed)
+            return COMMITTED;
+
+        for (int i = from; i < to; i++) {
+            saved.remove(i);
+        }
+        return failed[0];
+    }
+
+    private static Document documentFor(Database database, Map<String, Object> props) {
+        String id = (String) props.get("_id");
+        return id == null ? database.createDocument() : database.getDocument(id);
+    }
+
+    /**
+     * Whether saving the properties would conflict with the document's current revision.
+     */
+    private static boolean isConflict(Document doc, Map<String, Object> props) {
+        String currentRev = doc.getCurrentRevisionId();
+        Object rev = props.get("_rev");
+        return currentRev == null ? rev != null : !currentRev.equals(rev);
+    }
+
+    private static String idOf(ReadableMap doc) {
+        return doc.hasKey("_id") ? doc.getString("_id") : null;
+    }
+}
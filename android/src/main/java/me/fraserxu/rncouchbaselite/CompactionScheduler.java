@@ -0,0 +1,206 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.replicator.Replication;
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts open databases in the background once they have grown enough since their last compaction,
+ * and reports each run to JS as a databaseCompacted event. Compaction also deletes attachments no
+ * revision refers to any more.
+ *
+ * A database is due when its data size grew by sizeGrowth bytes, when revisions new revisions were written,
+ * or when maxAgeMs passed with any write at all. Databases with an active replication are skipped until the
+ * next check. The first check of a database only records its baseline.
+ */
+public class CompactionScheduler {
+    private static final String TAG = "ReactCBLite";
+    public static final String EVENT_NAME = "databaseCompacted";
+    public static final long DEFAULT_CHECK_INTERVAL_MS = 15 * 60 * 1000;
+    public static final long DEFAULT_SIZE_GROWTH = 16 * 1024 * 1024;
+    public static final long DEFAULT_REVISIONS = 10000;
+    public static final long DEFAULT_MAX_AGE_MS = 24 * 60 * 60 * 1000;
+
+    private final ReactContext context;
+    private final DatabaseRegistry databases;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cbl-compaction");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    private final Map<String, Baseline> baselines = new ConcurrentHashMap<>();
+    private volatile long sizeGrowth = DEFAULT_SIZE_GROWTH;
+    private volatile long revisions = DEFAULT_REVISIONS;
+    private volatile long maxAgeMs = DEFAULT_MAX_AGE_MS;
+    private ScheduledFuture<?> check;
+
+    private final Runnable checkTask = new Runnable() {
+        @Override
+        public void run() {
+            checkAll();
+        }
+    };
+
+    public CompactionScheduler(ReactContext context, DatabaseRegistry databases) {
+        this.context = context;
+        this.databases = databases;
+    }
+
+    public void setThresholds(long sizeGrowth, long revisions, long maxAgeMs) {
+        this.sizeGrowth = Math.max(1, sizeGrowth);
+        this.revisions = Math.max(1, revisions);
+        this.maxAgeMs = Math.max(1, maxAgeMs);
+    }
+
+    public synchronized void start(long checkIntervalMs) {
+        stop();
+        checkIntervalMs = Math.max(1000, checkIntervalMs);
+        check = scheduler.scheduleWithFixedDelay(checkTask, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (check != null) {
+            check.cancel(false);
+            check = null;
+        }
+    }
+
+    /**
+     * Stops scheduled checks and the compaction thread; a compaction in progress finishes.
+     */
+    public synchronized void shutdown() {
+        stop();
+        scheduler.shutdown();
+    }
+
+    public void forget(String databaseName) {
+        baselines.remove(databaseName);
+    }
+
+    /**
+     * Compacts the database now, on the compaction thread so it never overlaps a scheduled run, and resolves
+     * with the same result the databaseCompacted event carries.
+     */
+    public void compactNow(final String databaseName, final Promise promise) {
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.resolve(compact(databases.get(databaseName), "manual"));
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to compact " + databaseName, e);
+                }
+            }
+        });
+    }
+
+    private void checkAll() {
+        for (String databaseName : databases.getOpenDatabaseNames()) {
+            try {
+                Database database = databases.getIfOpen(databaseName);
+                if (database == null)
+                    continue;
+
+                String reason = dueReason(database);
+                if (reason == null)
+                    continue;
+
+                if (!replicationsIdle(databaseName)) {
+                    Log.v(TAG, "Compaction of " + databaseName + " postponed, replication is active");
+                    continue;
+                }
+
+                compact(database, reason);
+            } catch (Exception e) {
+                Log.w(TAG, "Scheduled compaction of " + databaseName + " failed", e);
+            }
+        }
+    }
+
+    private String dueReason(Database database) {
+        long now = System.currentTimeMillis();
+        long size = database.getTotalDataSize();
+        long sequence = database.getLastSequenceNumber();
+
+        Baseline baseline = baselines.get(database.getName());
+        if (baseline == null) {
+            baselines.put(database.getName(), new Baseline(now, size, sequence));
+            return null;
+        }
+
+        long written = sequence - baseline.sequence;
+        if (written <= 0)
+            return null;
+        if (size - baseline.size >= sizeGrowth)
+            return "size";
+        if (written >= revisions)
+            return "revisions";
+        if (now - baseline.compactedAt >= maxAgeMs)
+            return "age";
+        return null;
+    }
+
+    private boolean replicationsIdle(String databaseName) {
+        for (Replication replication : databases.getReplications(databaseName)) {
+            if (replication.getStatus() == Replication.ReplicationStatus.REPLICATION_ACTIVE)
+                return false;
+        }
+        return true;
+    }
+
+    private WritableMap compact(Database database, String reason) throws CouchbaseLiteException {
+        long sizeBefore = database.getTotalDataSize();
+        long started = System.currentTimeMillis();
+        database.compact();
+        long finished = System.currentTimeMillis();
+        long sizeAfter = database.getTotalDataSize();
+        baselines.put(database.getName(), new Baseline(finished, sizeAfter, database.getLastSequenceNumber()));
+
+        Log.i(TAG, "Compacted " + database.getName() + " (" + reason + ") in " + (finished - started) + "ms, reclaimed " + (sizeBefore - sizeAfter) + " bytes");
+
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_NAME, result(database.getName(), reason, sizeBefore, sizeAfter, finished - started));
+
+        return result(database.getName(), reason, sizeBefore, sizeAfter, finished - started);
+    }
+
+    private static WritableMap result(String databaseName, String reason, long sizeBefore, long sizeAfter, long durationMs) {
+        WritableMap result = Arguments.createMap();
+        result.putString("databaseName", databaseName);
+        result.putString("reason", reason);
+        result.putDouble("sizeBefore", sizeBefore);
+        result.putDouble("sizeAfter", sizeAfter);
+        result.putDouble("bytesReclaimed", Math.max(0, sizeBefore - sizeAfter));
+        result.putDouble("durationMs", durationMs);
+        return result;
+    }
+
+    private static class Baseline {
+        private final long compactedAt;
+        private final long size;
+        private final long sequence;
+
+        private Baseline(long compactedAt, long size, long sequence) {
+            this.compactedAt = compactedAt;
+            this.size = size;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.ChangesOptions;
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.Document;
+import com.couchbase.lite.DocumentChange;
+import com.couchbase.lite.RevisionList;
+import com.couchbase.lite.internal.RevisionInternal;
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards the changes of one database to JS as batched databaseChanged events.
+ *
+ * A batch is emitted as soon as it reaches batchSize changes, or flushIntervalMs after its first change,
+ * whichever comes first. When started with a since sequence the changes made after it are replayed first.
+ */
+public class DatabaseChangeFeed implements Database.ChangeListener {
+    private static final String TAG = "ReactCBLite";
+    public static final String EVENT_NAME = "databaseChanged";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 100;
+
+    // shared by every module instance, so it is never shut down; a daemon thread does not keep the process alive
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cbl-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ReactContext context;
+    private final Database database;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final List<Change> pending = new ArrayList<>();
+    private long lastSequence;
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public DatabaseChangeFeed(ReactContext context, Database database, int batchSize, long flushIntervalMs) {
+        this.context = context;
+        this.database = database;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+    }
+
+    /**
+     * @param since replay the changes made after this sequence, or a negative value to only send new changes
+     */
+    public synchronized void start(long since) {
+        database.addChangeListener(this);
+
+        if (since >= 0) {
+            ChangesOptions options = new ChangesOptions();
+            options.setIncludeConflicts(true);
+            RevisionList revisions = database.changesSince(since, options, null, null);
+            Map<String, Boolean> conflicts = new HashMap<>();
+            for (RevisionInternal revision : revisions) {
+                String docId = revision.getDocID();
+                Boolean conflict = conflicts.get(docId);
+                if (conflict == null) {
+                    conflict = isInConflict(docId);
+                    conflicts.put(docId, conflict);
+                }
+                add(new Change(docId, revision.getRevID(), conflict, revision.getSequence()));
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Whether the document currently has more than one leaf revision. Replayed changes are checked against the
+     * document as it is now, while live changes report whether the change itself created the conflict.
+     */
+    private boolean isInConflict(String docId) {
+        Document document = database.getExistingDocument(docId);
+        if (document == null)
+            return false;
+
+        try {
+            return document.getConflictingRevisions().size() > 1;
+        } catch (CouchbaseLiteException e) {
+            Log.w(TAG, "Could not read the conflicts of " + docId, e);
+            return false;
+        }
+    }
+
+    public void stop() {
+        database.removeChangeListener(this);
+        flush();
+    }
+
+    @Override
+    public void changed(Database.ChangeEvent event) {
+        synchronized (this) {
+            for (DocumentChange change : event.getChanges()) {
+                RevisionInternal revision = change.getAddedRevision();
+                long sequence = revision == null ? 0 : revision.getSequence();
+                add(new Change(change.getDocumentId(), change.getRevisionId(), change.isConflict(), sequence));
+            }
+
+            if (pending.size() < batchSize) {
+                if (!flushScheduled && !pending.isEmpty()) {
+                    flushScheduled = true;
+                    scheduler.schedule(flushTask, flushIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+
+        flush();
+    }
+
+    private void add(Change change) {
+        // changes that were already replayed from the since sequence are reported again by the listener
+        if (change.sequence != 0 && change.sequence <= lastSequence)
+            return;
+
+        lastSequence = Math.max(lastSequence, change.sequence);
+        pending.add(change);
+    }
+
+    private synchronized void flush() {
+        flushScheduled = false;
+
+        int start = 0;
+        while (start < pending.size()) {
+            int end = Math.min(start + batchSize, pending.size());
+
+            WritableArray changes = Arguments.createArray();
+            for (Change change : pending.subList(start, end)) {
+                changes.pushMap(change.toMap());
+            }
+
+            WritableMap event = Arguments.createMap();
+            event.putString("databaseName", database.getName());
+            event.putArray("changes", changes);
+            event.putDouble("lastSequence", pending.get(end - 1).sequence);
+
+            context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit(EVENT_NAME, event);
+            start = end;
+        }
+        pending.clear();
+    }
+
+    private static class Change {
+        private final String docId;
+        private final String revId;
+        private final boolean isConflict;
+        private final long sequence;
+
+        private Change(String docId, String revId, boolean isConflict, long sequence) {
+            this.docId = docId;
+            this.revId = revId;
+            this.isConflict = isConflict;
+            this.sequence = sequence;
+        }
+
+        private WritableMap toMap() {
+            WritableMap map = Arguments.createMap();
+            map.putString("docId", docId);
+            map.putString("revId", revId);
+            map.putBoolean("isConflict", isConflict);
+            map.putDouble("sequence", sequence);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.DatabaseOptions;
+import com.couchbase.lite.Manager;
+import com.couchbase.lite.replicator.Replication;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the open database handles and the replications started on them, so native calls do not have to
+ * look databases up through the manager or scan Database.getAllReplications() every time.
+ *
+ * Replications are indexed by database, direction and remote URL; only the ones registered here are known,
+ * not replications started through the REST listener.
+ */
+public class DatabaseRegistry {
+    private final Manager manager;
+    private final Map<String, Database> databases = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentMap<String, Replication>> replications = new ConcurrentHashMap<>();
+    private final Map<String, String> encryptionKeys = new ConcurrentHashMap<>();
+    private volatile String storageType;
+    private volatile boolean readOnly;
+
+    public DatabaseRegistry(Manager manager) {
+        this.manager = manager;
+    }
+
+    public Manager getManager() {
+        return manager;
+    }
+
+    /**
+     * The storage engine (Manager.SQLITE_STORAGE or Manager.FORESTDB_STORAGE) databases are opened with;
+     * null for the manager's default. Only applies to databases opened after the call.
+     */
+    public void setStorageType(String storageType) {
+        this.storageType = storageType;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * The password the database is encrypted with. The key is also registered with the manager so the
+     * listener can open the database for REST calls.
+     */
+    public void setEncryptionKey(String databaseName, String key) {
+        encryptionKeys.put(databaseName, key);
+        manager.registerEncryptionKey(key, databaseName);
+    }
+
+    /**
+     * Returns the open handle for the database, opening (and creating) it on first use.
+     */
+    public Database get(String databaseName) throws CouchbaseLiteException {
+        Database database = databases.get(databaseName);
+        if (database != null)
+            return database;
+
+        synchronized (this) {
+            database = databases.get(databaseName);
+            if (database == null) {
+                database = manager.openDatabase(databaseName, databaseOptions(databaseName));
+                NativeViews.applyAll(database);
+                databases.put(databaseName, database);
+            }
+            return database;
+        }
+    }
+
+    private DatabaseOptions databaseOptions(String databaseName) {
+        DatabaseOptions options = new DatabaseOptions();
+        options.setCreate(!readOnly);
+        options.setReadOnly(readOnly);
+        if (storageType != null)
+            options.setStorageType(storageType);
+        String key = encryptionKeys.get(databaseName);
+        if (key != null)
+            options.setEncryptionKey(key);
+        return options;
+    }
+
+    /**
+     * Returns the handle if the database is open, without opening it.
+     */
+    public Database getIfOpen(String databaseName) {
+        return databases.get(databaseName);
+    }
+
+    public boolean isOpen(String databaseName) {
+        return databases.containsKey(databaseName);
+    }
+
+    public List<String> getOpenDatabaseNames() {
+        return new ArrayList<>(databases.keySet());
+    }
+
+    /**
+     * Stops the database's registered replications and closes it; returns the replications that were stopped.
+     */
+    public synchronized List<Replication> close(String databaseName) {
+        Map<String, Replication> stopped = replications.remove(databaseName);
+        List<Replication> result = stopped == null ? Collections.<Replication>emptyList() : new ArrayList<>(stopped.values());
+        for (Replication replication : result) {
+            replication.stop();
+        }
+
+        Database database = databases.remove(databaseName);
+        if (database != null)
+            database.close();
+
+        return result;
+    }
+
+    public void registerReplication(Replication replication) {
+        String databaseName = replication.getLocalDatabase().getName();
+        ConcurrentMap<String, Replication> forDatabase = replications.get(databaseName);
+        if (forDatabase == null) {
+            synchronized (this) {
+                forDatabase = replications.get(databaseName);
+                if (forDatabase == null) {
+                    forDatabase = new ConcurrentHashMap<>();
+                    replications.put(databaseName, forDatabase);
+                }
+            }
+        }
+        forDatabase.put(replicationId(replication.isPull(), replication.getRemoteUrl()), replication);
+    }
+
+    /**
+     * Unregisters the replication if it is still the one registered for its database, direction and URL, and
+     * not one that has replaced it since.
+     */
+    public void unregisterReplication(Replication replication) {
+        ConcurrentMap<String, Replication> forDatabase = replications.get(replication.getLocalDatabase().getName());
+        if (forDatabase != null)
+            forDatabase.remove(replicationId(replication.isPull(), replication.getRemoteUrl()), replication);
+    }
+
+    public Replication findReplication(String databaseName, boolean isPull, URL remoteUrl) {
+        Map<String, Replication> forDatabase = replications.get(databaseName);
+        return forDatabase == null ? null : forDatabase.get(replicationId(isPull, remoteUrl));
+    }
+
+    public List<Replication> getReplications(String databaseName) {
+        Map<String, Replication> forDatabase = replications.get(databaseName);
+        return forDatabase == null ? Collections.<Replication>emptyList() : new ArrayList<>(forDatabase.values());
+    }
+
+    public List<Replication> getReplications(String databaseName, boolean isPull) {
+        List<Replication> matching = new ArrayList<>();
+        for (Replication replication : getReplications(databaseName)) {
+            if (replication.isPull() == isPull)
+                matching.add(replication);
+        }
+        return matching;
+    }
+
+    /**
+     * All registered replications whose database name starts with databasePrefix (null for any) and,
+     * when isPull is not null, that run in that direction.
+     */
+    public List<Replication> findReplications(String databasePrefix, Boolean isPull) {
+        List<Replication> matching = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<String, Replication>> entry : replications.entrySet()) {
+            if (databasePrefix != null && !entry.getKey().startsWith(databasePrefix))
+                continue;
+
+            for (Replication replication : entry.getValue().values()) {
+                if (isPull == null || replication.isPull() == isPull)
+                    matching.add(replication);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * A key identifying a replication across databases, used to index per-replication state.
+     */
+    public static String replicationKey(Replication replication) {
+        return replication.getLocalDatabase().getName() + " " + replicationId(replication.isPull(), replication.getRemoteUrl());
+    }
+
+    private static String replicationId(boolean isPull, URL remoteUrl) {
+        return (isPull ? "< " : "> ") + remoteUrl.toExternalForm();
+    }
+}
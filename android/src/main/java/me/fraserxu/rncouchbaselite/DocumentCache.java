@@ -0,0 +1,152 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.Database;
+import com.couchbase.lite.DocumentChange;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of the current revision of documents, bounded by entry count and approximate size.
+ *
+ * Entries are dropped as soon as the database reports a change to their document, so the cache never
+ * serves a revision that is no longer current. A read that raced with a change is not cached at all: callers
+ * take the epoch before reading the document and put() ignores results older than the last invalidation.
+ */
+public class DocumentCache implements Database.ChangeListener {
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+    public static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long epoch;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public DocumentCache(int maxEntries, long maxBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * @param rev the revision wanted, or null for the current one
+     */
+    public synchronized Map<String, Object> get(String docId, String rev) {
+        Entry entry = entries.get(docId);
+        if (entry == null || (rev != null && !rev.equals(entry.rev))) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.properties;
+    }
+
+    public synchronized void put(String docId, Map<String, Object> properties, long readEpoch) {
+        if (readEpoch != epoch)
+            return;
+
+        long size = estimateSize(properties);
+        if (size > maxBytes)
+            return;
+
+        Entry previous = entries.put(docId, new Entry((String) properties.get("_rev"), properties, size));
+        if (previous != null)
+            bytes -= previous.size;
+        bytes += size;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            bytes -= eldest.size;
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        epoch++;
+    }
+
+    @Override
+    public synchronized void changed(Database.ChangeEvent event) {
+        epoch++;
+        for (DocumentChange change : event.getChanges()) {
+            Entry entry = entries.remove(change.getDocumentId());
+            if (entry != null) {
+                bytes -= entry.size;
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("hits", hits);
+        stats.putDouble("misses", misses);
+        stats.putDouble("evictions", evictions);
+        stats.putDouble("invalidations", invalidations);
+        stats.putInt("entries", entries.size());
+        stats.putDouble("bytes", bytes);
+        stats.putInt("maxEntries", maxEntries);
+        stats.putDouble("maxBytes", maxBytes);
+        return stats;
+    }
+
+    /**
+     * A rough estimate of the heap used by a document, good enough to bound the cache.
+     */
+    private static long estimateSize(Map<String, Object> properties) {
+        long size = 0;
+        ArrayDeque<Object> work = new ArrayDeque<>();
+        work.push(properties);
+        while (!work.isEmpty()) {
+            Object value = work.pop();
+            if (value instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    size += 32 + 2 * String.valueOf(entry.getKey()).length();
+                    if (entry.getValue() != null)
+                        work.push(entry.getValue());
+                }
+            } else if (value instanceof List) {
+                for (Object item : (List<?>) value) {
+                    size += 8;
+                    if (item != null)
+                        work.push(item);
+                }
+            } else if (value instanceof String) {
+                size += 40 + 2 * ((String) value).length();
+            } else {
+                size += 16;
+            }
+        }
+        return size;
+    }
+
+    private static class Entry {
+        private final String rev;
+        private final Map<String, Object> properties;
+        private final long size;
+
+        private Entry(String rev, Map<String, Object> properties, long size) {
+            this.rev = rev;
+            this.properties = properties;
+            this.size = size;
+        }
+    }
+}
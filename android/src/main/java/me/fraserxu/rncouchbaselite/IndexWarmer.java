@@ -0,0 +1,164 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.Database;
+import com.couchbase.lite.View;
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings the indexes of a set of views up to date in the background, so the first query after a pull or a
+ * burst of writes does not pay for indexing.
+ *
+ * A run is triggered when a replication of the database goes idle or after writeThreshold local writes, and
+ * starts debounceMs after the last trigger. Each run is reported to JS as a viewIndexUpdated event with the
+ * indexing time of every view and how many sequences it was behind.
+ */
+public class IndexWarmer implements Database.ChangeListener {
+    private static final String TAG = "ReactCBLite";
+    public static final String EVENT_NAME = "viewIndexUpdated";
+    public static final int DEFAULT_WRITE_THRESHOLD = 100;
+    public static final long DEFAULT_DEBOUNCE_MS = 1000;
+
+    // shared by every module instance, so it is never shut down; a daemon thread does not keep the process alive
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "cbl-index-warmer");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final ReactContext context;
+    private final Database database;
+    private final List<String> viewNames;
+    private final int writeThreshold;
+    private final long debounceMs;
+    private int writes;
+    private String trigger;
+    private ScheduledFuture<?> pending;
+    private volatile boolean cancelled;
+
+    private final Runnable warmTask = new Runnable() {
+        @Override
+        public void run() {
+            warm();
+        }
+    };
+
+    /**
+     * @param viewNames views as 'design/view'
+     */
+    public IndexWarmer(ReactContext context, Database database, List<String> viewNames, int writeThreshold, long debounceMs) {
+        this.context = context;
+        this.database = database;
+        this.viewNames = viewNames;
+        this.writeThreshold = Math.max(1, writeThreshold);
+        this.debounceMs = Math.max(0, debounceMs);
+    }
+
+    public void start() {
+        database.addChangeListener(this);
+    }
+
+    /**
+     * Stops listening and drops a pending run; a view being indexed finishes but the rest of the run is skipped.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        database.removeChangeListener(this);
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    public void replicationIdle() {
+        schedule("replication");
+    }
+
+    @Override
+    public void changed(Database.ChangeEvent event) {
+        // pulled revisions are covered by the replication going idle
+        if (event.isExternal())
+            return;
+
+        boolean due;
+        synchronized (this) {
+            writes += event.getChanges().size();
+            due = writes >= writeThreshold;
+        }
+        if (due)
+            schedule("writes");
+    }
+
+    public synchronized void schedule(String trigger) {
+        if (cancelled)
+            return;
+
+        this.trigger = trigger;
+        if (pending != null)
+            pending.cancel(false);
+        pending = scheduler.schedule(warmTask, debounceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void warm() {
+        String trigger;
+        synchronized (this) {
+            if (cancelled)
+                return;
+            trigger = this.trigger;
+            writes = 0;
+            pending = null;
+        }
+
+        long started = System.currentTimeMillis();
+        WritableArray results = Arguments.createArray();
+        for (String viewName : viewNames) {
+            if (cancelled)
+                break;
+            results.pushMap(warm(viewName));
+        }
+
+        WritableMap event = Arguments.createMap();
+        event.putString("databaseName", database.getName());
+        event.putString("trigger", trigger);
+        event.putDouble("durationMs", System.currentTimeMillis() - started);
+        event.putArray("views", results);
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_NAME, event);
+    }
+
+    private WritableMap warm(String viewName) {
+        WritableMap result = Arguments.createMap();
+        result.putString("view", viewName);
+        try {
+            int slash = viewName.indexOf('/');
+            View view = ViewQueries.getView(database, viewName.substring(0, slash), viewName.substring(slash + 1));
+
+            long lag = database.getLastSequenceNumber() - view.getLastSequenceIndexed();
+            long started = System.currentTimeMillis();
+            if (lag > 0)
+                view.updateIndex();
+
+            result.putDouble("lag", Math.max(0, lag));
+            result.putDouble("durationMs", System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to update the index of " + viewName, e);
+            result.putString("error", e.getMessage());
+        }
+        return result;
+    }
+}
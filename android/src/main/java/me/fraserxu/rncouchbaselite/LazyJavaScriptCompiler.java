@@ -0,0 +1,53 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.Mapper;
+import com.couchbase.lite.Reducer;
+import com.couchbase.lite.ReplicationFilter;
+import com.couchbase.lite.ReplicationFilterCompiler;
+import com.couchbase.lite.ViewCompiler;
+import com.couchbase.lite.javascript.JavaScriptReplicationFilterCompiler;
+import com.couchbase.lite.javascript.JavaScriptViewCompiler;
+
+/**
+ * Installs as the view and filter compiler but only creates the Rhino backed compilers the first time a
+ * design document function is actually compiled, so apps that never use one do not pay for it at startup.
+ */
+public class LazyJavaScriptCompiler implements ViewCompiler, ReplicationFilterCompiler {
+    private volatile JavaScriptViewCompiler viewCompiler;
+    private volatile JavaScriptReplicationFilterCompiler filterCompiler;
+
+    @Override
+    public Mapper compileMap(String source, String language) {
+        return viewCompiler().compileMap(source, language);
+    }
+
+    @Override
+    public Reducer compileReduce(String source, String language) {
+        return viewCompiler().compileReduce(source, language);
+    }
+
+    @Override
+    public ReplicationFilter compileFilterFunction(String source, String language) {
+        JavaScriptReplicationFilterCompiler compiler = filterCompiler;
+        if (compiler == null) {
+            synchronized (this) {
+                if (filterCompiler == null)
+                    filterCompiler = new JavaScriptReplicationFilterCompiler();
+                compiler = filterCompiler;
+            }
+        }
+        return compiler.compileFilterFunction(source, language);
+    }
+
+    private JavaScriptViewCompiler viewCompiler() {
+        JavaScriptViewCompiler compiler = viewCompiler;
+        if (compiler == null) {
+            synchronized (this) {
+                if (viewCompiler == null)
+                    viewCompiler = new JavaScriptViewCompiler();
+                compiler = viewCompiler;
+            }
+        }
+        return compiler;
+    }
+}
@@ -0,0 +1,136 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.LiveQuery;
+import com.couchbase.lite.QueryEnumerator;
+import com.couchbase.lite.QueryRow;
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a LiveQuery and emits liveQueryChanged events holding only the rows that were added, removed or
+ * changed since the previous result.
+ *
+ * Rows are identified by document id, key and emit ordinal (see identity()); a row counts as changed when its
+ * sequence (for map rows) or its value (for reduced rows) differs.
+ */
+public class LiveQuerySubscription implements LiveQuery.ChangeListener {
+    public static final String EVENT_NAME = "liveQueryChanged";
+    private static final String TAG = "ReactCBLite";
+
+    private final ReactContext context;
+    private final String databaseName;
+    private final String subscriptionId;
+    private final LiveQuery liveQuery;
+    private Map<List<Object>, QueryRow> previousRows = new HashMap<>();
+    private boolean emitted;
+
+    public LiveQuerySubscription(ReactContext context, String databaseName, String subscriptionId, LiveQuery liveQuery) {
+        this.context = context;
+        this.databaseName = databaseName;
+        this.subscriptionId = subscriptionId;
+        this.liveQuery = liveQuery;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public void start() {
+        liveQuery.addChangeListener(this);
+        liveQuery.start();
+    }
+
+    public void stop() {
+        liveQuery.removeChangeListener(this);
+        liveQuery.stop();
+    }
+
+    @Override
+    public void changed(LiveQuery.ChangeEvent event) {
+        if (event.getError() != null) {
+            Log.w(TAG, "Live query " + subscriptionId + " failed", event.getError());
+
+            WritableMap nativeEvent = Arguments.createMap();
+            nativeEvent.putString("subscriptionId", subscriptionId);
+            nativeEvent.putString("error", event.getError().getMessage());
+            emit(nativeEvent);
+            return;
+        }
+
+        QueryEnumerator rows = event.getRows();
+        if (rows == null)
+            return;
+
+        synchronized (this) {
+            WritableArray added = Arguments.createArray();
+            WritableArray changed = Arguments.createArray();
+            Map<List<Object>, QueryRow> currentRows = new HashMap<>();
+            Map<List<Object>, Integer> emitCounts = new HashMap<>();
+
+            for (QueryRow row : rows) {
+                List<Object> identity = identity(row.getSourceDocumentId(), row.getKey(), emitCounts);
+                currentRows.put(identity, row);
+
+                QueryRow previous = previousRows.remove(identity);
+                if (previous == null)
+                    added.pushMap(ViewQueries.convertRowToMap(row));
+                else if (isChanged(previous, row))
+                    changed.pushMap(ViewQueries.convertRowToMap(row));
+            }
+
+            WritableArray removed = Arguments.createArray();
+            for (QueryRow row : previousRows.values()) {
+                removed.pushMap(ViewQueries.convertRowToMap(row));
+            }
+            previousRows = currentRows;
+
+            // the first result is always sent so JS can render the initial (possibly empty) list
+            if (emitted && added.size() == 0 && removed.size() == 0 && changed.size() == 0)
+                return;
+            emitted = true;
+
+            WritableMap nativeEvent = Arguments.createMap();
+            nativeEvent.putString("subscriptionId", subscriptionId);
+            nativeEvent.putArray("added", added);
+            nativeEvent.putArray("removed", removed);
+            nativeEvent.putArray("changed", changed);
+            nativeEvent.putInt("total_rows", rows.getCount());
+            emit(nativeEvent);
+        }
+    }
+
+    /**
+     * Identifies a row by document id, key and its ordinal among the rows of the result with the same document id
+     * and key, since a document can emit the same key more than once. emitCounts tracks the ordinals of one result.
+     */
+    static List<Object> identity(String docId, Object key, Map<List<Object>, Integer> emitCounts) {
+        List<Object> emit = Arrays.asList(docId, key);
+        Integer ordinal = emitCounts.get(emit);
+        ordinal = ordinal == null ? 0 : ordinal + 1;
+        emitCounts.put(emit, ordinal);
+        return Arrays.asList(docId, key, ordinal);
+    }
+
+    private static boolean isChanged(QueryRow previous, QueryRow current) {
+        if (previous.getSequenceNumber() != current.getSequenceNumber())
+            return true;
+
+        Object previousValue = previous.getValue();
+        Object currentValue = current.getValue();
+        return previousValue == null ? currentValue != null : !previousValue.equals(currentValue);
+    }
+
+    private void emit(WritableMap nativeEvent) {
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_NAME, nativeEvent);
+    }
+}
@@ -0,0 +1,200 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.Emitter;
+import com.couchbase.lite.Mapper;
+import com.couchbase.lite.Reducer;
+import com.couchbase.lite.Status;
+import com.couchbase.lite.View;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Views whose map and reduce functions are Java code instead of JavaScript run through Rhino.
+ *
+ * Apps register named Mapper and Reducer implementations from Java, e.g. in MainApplication, and JS binds
+ * views to them by name. A view can also use a declarative field mapper that emits one field of the documents
+ * of a given type. _count and _sum reducers are built in.
+ *
+ * Bindings are remembered per database and take precedence over the view's design document function, so they
+ * are reapplied whenever the database is reopened.
+ */
+public class NativeViews {
+    private static final Map<String, Mapper> mappers = new ConcurrentHashMap<>();
+    private static final Map<String, Reducer> reducers = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, Binding>> bindings = new ConcurrentHashMap<>();
+
+    static {
+        registerReducer("_count", new Reducer() {
+            @Override
+            public Object reduce(List<Object> keys, List<Object> values, boolean rereduce) {
+                if (!rereduce)
+                    return values.size();
+                return sum(values);
+            }
+        });
+        registerReducer("_sum", new Reducer() {
+            @Override
+            public Object reduce(List<Object> keys, List<Object> values, boolean rereduce) {
+                return sum(values);
+            }
+        });
+    }
+
+    public static void registerMapper(String name, Mapper mapper) {
+        mappers.put(name, mapper);
+    }
+
+    public static void registerReducer(String name, Reducer reducer) {
+        reducers.put(name, reducer);
+    }
+
+    /**
+     * Binds the view to native functions and remembers the binding for the database.
+     *
+     * The spec's map is either the name of a registered Mapper or a field mapper
+     * {field, type, typeField, value}; reduce is the name of a registered Reducer. version defaults to one
+     * derived from the spec, so changing the spec rebuilds the index.
+     */
+    public static View bind(Database database, String viewName, Map<String, Object> spec) throws CouchbaseLiteException {
+        Binding binding = createBinding(viewName, spec);
+
+        Map<String, Binding> forDatabase = bindings.get(database.getName());
+        if (forDatabase == null) {
+            synchronized (bindings) {
+                forDatabase = bindings.get(database.getName());
+                if (forDatabase == null) {
+                    forDatabase = new ConcurrentHashMap<>();
+                    bindings.put(database.getName(), forDatabase);
+                }
+            }
+        }
+        forDatabase.put(viewName, binding);
+
+        View view = database.getView(viewName);
+        view.setMapReduce(binding.mapper, binding.reducer, binding.version);
+        return view;
+    }
+
+    /**
+     * Sets up the view from its binding if it has one and has not been set up yet; returns whether it has one.
+     */
+    public static boolean apply(Database database, View view) {
+        Map<String, Binding> forDatabase = bindings.get(database.getName());
+        Binding binding = forDatabase == null ? null : forDatabase.get(view.getName());
+        if (binding == null)
+            return false;
+
+        if (view.getMap() == null)
+            view.setMapReduce(binding.mapper, binding.reducer, binding.version);
+        return true;
+    }
+
+    /**
+     * Sets up every view bound for the database, used when the database is (re)opened.
+     */
+    public static void applyAll(Database database) {
+        Map<String, Binding> forDatabase = bindings.get(database.getName());
+        if (forDatabase == null)
+            return;
+
+        for (Binding binding : forDatabase.values()) {
+            apply(database, database.getView(binding.viewName));
+        }
+    }
+
+    private static Binding createBinding(String viewName, Map<String, Object> spec) throws CouchbaseLiteException {
+        Object map = spec.get("map");
+        Mapper mapper;
+        String version;
+        if (map instanceof String) {
+            mapper = mappers.get(map);
+            if (mapper == null)
+                throw new CouchbaseLiteException("No native mapper registered as " + map, Status.NOT_FOUND);
+            version = "mapper:" + map;
+        } else if (map instanceof Map) {
+            Map<String, Object> fieldSpec = (Map<String, Object>) map;
+            String field = (String) fieldSpec.get("field");
+            if (field == null)
+                throw new CouchbaseLiteException("A field mapper needs a field", Status.BAD_REQUEST);
+
+            String type = (String) fieldSpec.get("type");
+            String typeField = fieldSpec.containsKey("typeField") ? (String) fieldSpec.get("typeField") : "type";
+            String value = (String) fieldSpec.get("value");
+            mapper = fieldMapper(field, type, typeField, value);
+            version = "field:" + field + "|" + type + "|" + typeField + "|" + value;
+        } else {
+            throw new CouchbaseLiteException("A native view needs a map", Status.BAD_REQUEST);
+        }
+
+        Reducer reducer = null;
+        String reduce = (String) spec.get("reduce");
+        if (reduce != null) {
+            reducer = reducers.get(reduce);
+            if (reducer == null)
+                throw new CouchbaseLiteException("No native reducer registered as " + reduce, Status.NOT_FOUND);
+            version += "/" + reduce;
+        }
+
+        if (spec.get("version") != null)
+            version = String.valueOf(spec.get("version"));
+
+        return new Binding(viewName, mapper, reducer, version);
+    }
+
+    /**
+     * Emits the field (a dotted path) of every document whose typeField equals type, or of every document
+     * if type is null, with the value field (or null) as the value. Documents without the field are skipped.
+     */
+    static Mapper fieldMapper(final String field, final String type, final String typeField, final String value) {
+        final String[] fieldPath = field.split("\\.");
+        final String[] valuePath = value == null ? null : value.split("\\.");
+        return new Mapper() {
+            @Override
+            public void map(Map<String, Object> document, Emitter emitter) {
+                if (type != null && !type.equals(document.get(typeField)))
+                    return;
+
+                Object key = valueAt(document, fieldPath);
+                if (key != null)
+                    emitter.emit(key, valuePath == null ? null : valueAt(document, valuePath));
+            }
+        };
+    }
+
+    private static Object valueAt(Map<String, Object> document, String[] path) {
+        Object value = document;
+        for (String part : path) {
+            if (!(value instanceof Map))
+                return null;
+            value = ((Map<?, ?>) value).get(part);
+        }
+        return value;
+    }
+
+    private static Object sum(List<Object> values) {
+        double total = 0;
+        for (Object value : values) {
+            if (value instanceof Number)
+                total += ((Number) value).doubleValue();
+        }
+        return total;
+    }
+
+    private static class Binding {
+        private final String viewName;
+        private final Mapper mapper;
+        private final Reducer reducer;
+        private final String version;
+
+        private Binding(String viewName, Mapper mapper, Reducer reducer, String version) {
+            this.viewName = viewName;
+            this.mapper = mapper;
+            this.reducer = reducer;
+            this.version = version;
+        }
+    }
+}
@@ -1,22 +1,21 @@
 package me.fraserxu.rncouchbaselite;
 
-import android.net.Uri;
-import android.os.AsyncTask;
-
 import com.couchbase.lite.Attachment;
 import com.couchbase.lite.CouchbaseLiteException;
 import com.couchbase.lite.Database;
 import com.couchbase.lite.Document;
+import com.couchbase.lite.LiveQuery;
 import com.couchbase.lite.Manager;
+import com.couchbase.lite.ManagerOptions;
+import com.couchbase.lite.QueryEnumerator;
 import com.couchbase.lite.Revision;
+import com.couchbase.lite.SavedRevision;
+import com.couchbase.lite.UnsavedRevision;
 import com.couchbase.lite.View;
 import com.couchbase.lite.android.AndroidContext;
-import com.couchbase.lite.javascript.JavaScriptReplicationFilterCompiler;
-import com.couchbase.lite.javascript.JavaScriptViewCompiler;
 import com.couchbase.lite.listener.Credentials;
 import com.couchbase.lite.listener.LiteListener;
 import com.couchbase.lite.replicator.Replication;
-import com.couchbase.lite.util.IOUtils;
 import com.couchbase.lite.util.Log;
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
@@ -24,39 +23,32 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.security.AccessControlContext;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import Acme.Serve.Serve;
 
 import static java.security.AccessController.getContext;
-import static me.fraserxu.rncouchbaselite.ReactNativeJson.convertJsonToMap;
+import static me.fraserxu.rncouchbaselite.ReactNativeJson.convertMapToProperties;
+import static me.fraserxu.rncouchbaselite.ReactNativeJson.convertPropertiesToMap;
 
 public class ReactCBLite extends ReactContextBaseJavaModule implements Replication.ChangeListener {
 
@@ -67,14 +59,34 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
     public static final String REACT_CLASS = "ReactCBLite";
     private static final String TAG = "ReactCBLite";
     private static final int SUGGESTED_PORT = 5984;
+    private static final int MAX_QUERY_CURSORS = 32;
+    private static final long QUERY_CURSOR_TTL_MS = 5 * 60 * 1000;
     private ReactApplicationContext context;
     private Manager manager;
+    private DatabaseRegistry databases;
+    private CompactionScheduler compaction;
     private Credentials allowedCredentials;
     private LiteListener listener;
+    private int listenerPort = SUGGESTED_PORT;
+    private final Properties listenerProperties = new Properties();
+    private final ReplicationEventEmitter replicationEvents;
+    private final AttachmentUploader uploader;
+    private final ResultFiles resultFiles;
+    private final WorkQueues workQueues = new WorkQueues();
+    private final Map<String, ReplicationStats> replicationStats = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> replicationSettings = new ConcurrentHashMap<>();
+    private final Map<String, QueryCursor> queryCursors = new ConcurrentHashMap<>();
+    private final Map<String, LiveQuerySubscription> liveQueries = new ConcurrentHashMap<>();
+    private final Map<String, DatabaseChangeFeed> changeFeeds = new ConcurrentHashMap<>();
+    private final Map<String, DocumentCache> documentCaches = new ConcurrentHashMap<>();
+    private final Map<String, IndexWarmer> indexWarmers = new ConcurrentHashMap<>();
 
     public ReactCBLite(ReactApplicationContext reactContext) {
         super(reactContext);
         this.context = reactContext;
+        this.replicationEvents = new ReplicationEventEmitter(reactContext);
+        this.uploader = new AttachmentUploader(reactContext);
+        this.resultFiles = new ResultFiles(reactContext);
     }
 
     @Override
@@ -82,6 +94,62 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
         return REACT_CLASS;
     }
 
+    /**
+     * Called when React Native tears the module down, e.g. on a reload. Stops everything the module started so
+     * its threads, listeners and replications do not outlive it. A write already running completes; queued work
+     * that has not started is rejected with a "cbl busy" error.
+     */
+    @Override
+    public void onCatalystInstanceDestroy() {
+        releaseManager();
+        replicationEvents.shutdown();
+        workQueues.shutdown();
+    }
+
+    /**
+     * Stops everything running against the current manager: live queries, change feeds, document caches, index
+     * warming, query cursors, replications, the listener and compaction. Used when the module is destroyed and
+     * before a repeated init replaces the manager.
+     */
+    private void releaseManager() {
+        for (LiveQuerySubscription subscription : liveQueries.values()) {
+            subscription.stop();
+        }
+        liveQueries.clear();
+        for (DatabaseChangeFeed feed : changeFeeds.values()) {
+            feed.stop();
+        }
+        changeFeeds.clear();
+        for (IndexWarmer warmer : indexWarmers.values()) {
+            warmer.cancel();
+        }
+        indexWarmers.clear();
+        queryCursors.clear();
+
+        if (databases != null) {
+            for (Map.Entry<String, DocumentCache> cache : documentCaches.entrySet()) {
+                Database database = databases.getIfOpen(cache.getKey());
+                if (database != null)
+                    database.removeChangeListener(cache.getValue());
+            }
+            for (Replication replication : databases.findReplications(null, null)) {
+                forgetReplication(replication);
+                replication.stop();
+            }
+        }
+        documentCaches.clear();
+
+        if (listener != null) {
+            Log.i(TAG, "Stopping CBL listener on port " + listener.getListenPort());
+            listener.stop();
+            listener = null;
+        }
+        if (compaction != null) {
+            compaction.shutdown();
+            compaction = null;
+        }
+    }
+
     @ReactMethod
     public static void logLevel(String name, Promise promise) {
         switch (name) {
@@ -133,31 +201,148 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
             credentials = new Credentials(username, password);
         }
 
-        this.initWithCredentials(credentials, promise);
+        if (options.hasKey("replicationEventInterval"))
+            replicationEvents.setInterval(options.getInt("replicationEventInterval"));
+
+        if (options.hasKey("uploadConcurrency"))
+            workQueues.setIoThreads(options.getInt("uploadConcurrency"));
+
+        if (options.hasKey("ioThreads"))
+            workQueues.setIoThreads(options.getInt("ioThreads"));
+
+        if (options.hasKey("maxQueueDepth"))
+            workQueues.setMaxQueueDepth(options.getInt("maxQueueDepth"));
+
+        String storageType = null;
+        if (options.hasKey("storageType"))
+            storageType = options.getString("storageType");
+
+        boolean readOnly = false;
+        if (options.hasKey("readOnly"))
+            readOnly = options.getBoolean("readOnly");
+
+        Map<String, Object> encryptionKeys = null;
+        if (options.hasKey("encryptionKeys"))
+            encryptionKeys = convertMapToProperties(options.getMap("encryptionKeys"));
+
+        if (options.hasKey("listener"))
+            configureListener(options.getMap("listener"));
+
+        boolean startListener = true;
+        if (options.hasKey("startListener"))
+            startListener = options.getBoolean("startListener");
+
+        this.initWithCredentials(credentials, storageType, readOnly, encryptionKeys, startListener, options, promise);
     }
 
-    private void initWithCredentials(Credentials credentials, Promise promise) {
+    /**
+     * Passes the listener options through to the Acme.Serve server behind LiteListener, which parses its numeric
+     * settings from strings. Takes effect the next time the listener is created.
+     */
+    private void configureListener(ReadableMap options) {
+        if (options.hasKey("port"))
+            listenerPort = options.getInt("port");
+        if (options.hasKey("threads"))
+            listenerProperties.put(Serve.ARG_THREAD_POOL_SIZE, String.valueOf(options.getInt("threads")));
+        if (options.hasKey("keepAlive"))
+            listenerProperties.put(Serve.ARG_KEEPALIVE, options.getBoolean("keepAlive"));
+        if (options.hasKey("keepAliveTimeout"))
+            listenerProperties.put(Serve.ARG_KEEPALIVE_TIMEOUT, String.valueOf(options.getInt("keepAliveTimeout")));
+        if (options.hasKey("maxKeepAliveRequests"))
+            listenerProperties.put(Serve.ARG_MAX_CONN_USE, String.valueOf(options.getInt("maxKeepAliveRequests")));
+        if (options.hasKey("backlog"))
+            listenerProperties.put(Serve.ARG_BACKLOG, String.valueOf(options.getInt("backlog")));
+    }
+
+    /**
+     * autoCompact is either true for the default thresholds or a map overriding some of them.
+     */
+    private void startCompaction(ReadableMap options) {
+        long checkInterval = CompactionScheduler.DEFAULT_CHECK_INTERVAL_MS;
+        long sizeGrowth = CompactionScheduler.DEFAULT_SIZE_GROWTH;
+        long revisions = CompactionScheduler.DEFAULT_REVISIONS;
+        long maxAge = CompactionScheduler.DEFAULT_MAX_AGE_MS;
+
+        if (options.getType("autoCompact") == ReadableType.Map) {
+            ReadableMap autoCompact = options.getMap("autoCompact");
+            if (autoCompact.hasKey("checkInterval"))
+                checkInterval = (long) autoCompact.getDouble("checkInterval");
+            if (autoCompact.hasKey("sizeGrowth"))
+                sizeGrowth = (long) autoCompact.getDouble("sizeGrowth");
+            if (autoCompact.hasKey("revisions"))
+                revisions = (long) autoCompact.getDouble("revisions");
+            if (autoCompact.hasKey("maxAge"))
+                maxAge = (long) autoCompact.getDouble("maxAge");
+        } else if (options.getType("autoCompact") != ReadableType.Boolean) {
+            throw new IllegalArgumentException("autoCompact must be a boolean or a map of thresholds");
+        } else if (!options.getBoolean("autoCompact")) {
+            compaction.stop();
+            return;
+        }
+
+        compaction.setThresholds(sizeGrowth, revisions, maxAge);
+        compaction.start(checkInterval);
+    }
+
+    private void initWithCredentials(Credentials credentials, String storageType, boolean readOnly, Map<String, Object> encryptionKeys, boolean startListener, ReadableMap options, Promise promise) {
         this.allowedCredentials = credentials;
 
         try {
-            View.setCompiler(new JavaScriptViewCompiler());
-            Database.setFilterCompiler(new JavaScriptReplicationFilterCompiler());
+            // a repeated init replaces the manager; nothing may keep running against the previous one, and the
+            // listener is started again below for the new manager and credentials
+            if (manager != null) {
+                Log.i(TAG, "init called again, closing the previous manager");
+                releaseManager();
+                manager.close();
+                manager = null;
+            }
 
-            AndroidContext context = new AndroidContext(this.context);
+            long started = System.nanoTime();
 
-            manager = new Manager(context, Manager.DEFAULT_OPTIONS);
+            LazyJavaScriptCompiler compiler = new LazyJavaScriptCompiler();
+            View.setCompiler(compiler);
+            Database.setFilterCompiler(compiler);
+            long compilersReady = System.nanoTime();
 
-            this._startListener();
+            AndroidContext context = new AndroidContext(this.context);
 
-            WritableMap response = new WritableNativeMap();
-            response.putInt("listenerPort", listener.getListenPort());
-            response.putString("listenerHost", "localhost");
-            response.putString("listenerUrl", String.format("http://localhost:%d/", listener.getListenPort()));
-            if (credentials != null) {
-                response.putString("listenerUrlWithAuth", String.format("http://%s:%s@localhost:%d/", credentials.getLogin(), credentials.getPassword(), listener.getListenPort()));
-                response.putString("username", credentials.getLogin());
-                response.putString("password", credentials.getPassword());
+            ManagerOptions managerOptions = Manager.DEFAULT_OPTIONS;
+            if (readOnly) {
+                managerOptions = new ManagerOptions();
+                managerOptions.setReadOnly(true);
+            }
+
+            manager = new Manager(context, managerOptions);
+            if (storageType != null)
+                manager.setStorageType(storageType);
+
+            databases = new DatabaseRegistry(manager);
+            compaction = new CompactionScheduler(this.context, databases);
+            databases.setStorageType(storageType);
+            databases.setReadOnly(readOnly);
+            if (encryptionKeys != null) {
+                for (Map.Entry<String, Object> key : encryptionKeys.entrySet()) {
+                    databases.setEncryptionKey(key.getKey(), (String) key.getValue());
+                }
             }
+
+            if (options.hasKey("autoCompact"))
+                startCompaction(options);
+
+            long managerReady = System.nanoTime();
+
+            if (startListener)
+                this._startListener();
+            long listenerReady = System.nanoTime();
+
+            WritableMap timings = Arguments.createMap();
+            timings.putDouble("compilersMs", (compilersReady - started) / 1e6);
+            timings.putDouble("managerMs", (managerReady - compilersReady) / 1e6);
+            timings.putDouble("listenerMs", (listenerReady - managerReady) / 1e6);
+            timings.putDouble("totalMs", (listenerReady - started) / 1e6);
+
+            WritableMap response = listenerInfo();
+            response.putMap("timings", timings);
             promise.resolve(response);
 
         } catch (final Exception e) {
@@ -193,27 +378,56 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
 
     @ReactMethod
     public void stopListener(Promise promise) {
-        Log.i(TAG, "Stopping CBL listener on port " + listener.getListenPort());
-        listener.stop();
+        if (listener != null) {
+            Log.i(TAG, "Stopping CBL listener on port " + listener.getListenPort());
+            listener.stop();
+        }
         promise.resolve(null);
     }
 
+    /**
+     * Starts the listener, e.g. when init was called with startListener: false, and resolves with the same
+     * listener details init returns.
+     */
     @ReactMethod
     public void startListener(Promise promise) {
-        _startListener();
-        promise.resolve(null);
+        try {
+            _startListener();
+            promise.resolve(listenerInfo());
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to startListener", e);
+        }
+    }
+
+    /**
+     * The credentials, and the listener's address once it has been started.
+     */
+    private WritableMap listenerInfo() {
+        WritableMap info = new WritableNativeMap();
+        info.putBoolean("listenerStarted", listener != null);
+        if (listener != null) {
+            info.putInt("listenerPort", listener.getListenPort());
+            info.putString("listenerHost", "localhost");
+            info.putString("listenerUrl", String.format("http://localhost:%d/", listener.getListenPort()));
+        }
+        if (allowedCredentials != null) {
+            if (listener != null)
+                info.putString("listenerUrlWithAuth", String.format("http://%s:%s@localhost:%d/", allowedCredentials.getLogin(), allowedCredentials.getPassword(), listener.getListenPort()));
+            info.putString("username", allowedCredentials.getLogin());
+            info.putString("password", allowedCredentials.getPassword());
+        }
+        return info;
     }
 
     private void _startListener() {
         if (listener == null) {
+            Properties props = new Properties();
+            props.putAll(listenerProperties);
             if (allowedCredentials == null) {
                 Log.i(TAG, "No credentials, so binding to localhost");
-                Properties props = new Properties();
                 props.put(Serve.ARG_BINDADDRESS, "localhost");
-                listener = new LiteListener(manager, SUGGESTED_PORT, allowedCredentials, props);
-            } else {
-                listener = new LiteListener(manager, SUGGESTED_PORT, allowedCredentials);
             }
+            listener = new LiteListener(manager, listenerPort, allowedCredentials, props);
 
             Log.i(TAG, "Starting CBL listener on port " + listener.getListenPort());
         } else {
@@ -223,39 +437,102 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
         listener.start();
     }
 
+    @ReactMethod
+    public void openDatabase(String databaseName, Promise promise) {
+        try {
+            databases.get(databaseName);
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to openDatabase", e);
+        }
+    }
+
+    @ReactMethod
+    public void closeDatabase(String databaseName, Promise promise) {
+        try {
+            DatabaseChangeFeed feed = changeFeeds.remove(databaseName);
+            if (feed != null)
+                feed.stop();
+            DocumentCache cache = documentCaches.remove(databaseName);
+            Database database = databases.getIfOpen(databaseName);
+            if (cache != null && database != null)
+                database.removeChangeListener(cache);
+            closeQueryCursors(databaseName);
+            stopLiveQueries(databaseName);
+            IndexWarmer warmer = indexWarmers.remove(databaseName);
+            if (warmer != null)
+                warmer.cancel();
+            if (compaction != null)
+                compaction.forget(databaseName);
+
+            for (Replication replication : databases.close(databaseName)) {
+                forgetReplication(replication);
+            }
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to closeDatabase", e);
+        }
+    }
+
     @ReactMethod
     public void startContinuousReplication(String databaseName, String url, ReadableMap options, Promise promise) {
         try {
-            Database database = manager.getDatabase(databaseName);
+            Database database = databases.get(databaseName);
 
             URL remoteUrl = new URL(url);
 
             boolean isPull = isPull(options.getString("type"));
+            Map<String, Object> settings = replicationSettings(options);
 
-            for (Replication replication : findContinuousReplications(database, isPull)) {
-                if (replication.getRemoteUrl().equals(remoteUrl)) {
+            Replication existing = databases.findReplication(databaseName, isPull, remoteUrl);
+            if (existing != null) {
+                if (settings.equals(replicationSettings.get(DatabaseRegistry.replicationKey(existing)))) {
                     Log.i(TAG, "replication already exists");
                     promise.resolve(null);
                     return;
                 }
+
+                Log.i(TAG, "replication options changed, restarting it");
+                existing.stop();
+                forgetReplication(existing);
             }
 
             Replication repl = isPull ? database.createPullReplication(remoteUrl) : database.createPushReplication(remoteUrl);
 
-            String sessionId = options.getString("sessionId");
+            if (options.hasKey("sessionId")) {
+                String cookieName = "SyncGatewaySession";
+                if (options.hasKey("cookieName"))
+                    cookieName = options.getString("cookieName");
 
-            String cookieName = "SyncGatewaySession";
-            if (options.hasKey("cookieName"))
-                cookieName = options.getString("cookieName");
+                boolean secure = false;
+                if (options.hasKey("secure"))
+                    secure = options.getBoolean("secure");
 
-            boolean secure = false;
-            if (options.hasKey("secure"))
-                secure = options.getBoolean("secure");
+                repl.setCookie(cookieName, options.getString("sessionId"), null, null, secure, true);
+            }
 
-            repl.setContinuous(true);
-            repl.setCookie(cookieName, sessionId, null, null, secure, true);
+            boolean continuous = true;
+            if (options.hasKey("continuous"))
+                continuous = options.getBoolean("continuous");
+            repl.setContinuous(continuous);
+
+            // a push filter is a design doc filter function, a pull filter is evaluated by the server
+            if (options.hasKey("filter"))
+                repl.setFilter(options.getString("filter"));
+            if (options.hasKey("filterParams"))
+                repl.setFilterParams(convertMapToProperties(options.getMap("filterParams")));
+            if (options.hasKey("channels"))
+                repl.setChannels(stringList(options.getArray("channels")));
+            if (options.hasKey("documentIDs"))
+                repl.setDocIds(stringList(options.getArray("documentIDs")));
+            if (options.hasKey("headers"))
+                repl.setHeaders(convertMapToProperties(options.getMap("headers")));
 
             repl.addChangeListener(this);
+            replicationStats.put(DatabaseRegistry.replicationKey(repl), new ReplicationStats(repl));
+            replicationSettings.put(DatabaseRegistry.replicationKey(repl), settings);
+            databases.registerReplication(repl);
 
             repl.start();
 
@@ -268,14 +545,10 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
     @ReactMethod
     public void stopContinuousReplication(String databaseName, String pushOrPull, Promise promise) {
         try {
-            Database database = manager.getDatabase(databaseName);
-
-            for (Replication replication : findContinuousReplications(database, isPull(pushOrPull))) {
-                if (replication.isPull()) {
-                    Log.i(TAG, "stopping replication");
-                    replication.stop();
-                    replication.removeChangeListener(this);
-                }
+            for (Replication replication : databases.getReplications(databaseName, isPull(pushOrPull))) {
+                Log.i(TAG, "stopping replication");
+                replication.stop();
+                forgetReplication(replication);
             }
 
             promise.resolve(null);
@@ -287,43 +560,149 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
     @ReactMethod
     public void suspendContinuousReplications(String databaseName, Promise promise) {
         try {
-            Database database = manager.getDatabase(databaseName);
-
-            for (Replication replication : findContinuousReplications(database, true)) {
-                Log.i(TAG, "suspending replication");
-                replication.goOffline();
-            }
-
-            for (Replication replication : findContinuousReplications(database, false)) {
+            for (Replication replication : databases.getReplications(databaseName)) {
                 Log.i(TAG, "suspending replication");
                 replication.goOffline();
             }
 
             promise.resolve(null);
         } catch (Exception e) {
-            promise.reject("cbl error", "Failed to stopContinuousReplication", e);
+            promise.reject("cbl error", "Failed to suspendContinuousReplications", e);
         }
     }
 
     @ReactMethod
     public void resumeContinuousReplications(String databaseName, Promise promise) {
         try {
-            Database database = manager.getDatabase(databaseName);
-
-            for (Replication replication : findContinuousReplications(database, true)) {
-                Log.i(TAG, "suspending replication");
+            for (Replication replication : databases.getReplications(databaseName)) {
+                Log.i(TAG, "resuming replication");
                 replication.goOnline();
             }
 
-            for (Replication replication : findContinuousReplications(database, false)) {
-                Log.i(TAG, "suspending replication");
-                replication.goOnline();
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to resumeContinuousReplications", e);
+        }
+    }
+
+    @ReactMethod
+    public void suspendAllReplications(ReadableMap options, Promise promise) {
+        controlAllReplications("suspend", options, promise);
+    }
+
+    @ReactMethod
+    public void resumeAllReplications(ReadableMap options, Promise promise) {
+        controlAllReplications("resume", options, promise);
+    }
+
+    @ReactMethod
+    public void stopAllReplications(ReadableMap options, Promise promise) {
+        controlAllReplications("stop", options, promise);
+    }
+
+    /**
+     * Applies the action to every tracked replication matching the databasePrefix/type options in one pass,
+     * then reports the result with a single replicationsChanged event.
+     */
+    private void controlAllReplications(String action, ReadableMap options, Promise promise) {
+        try {
+            String databasePrefix = null;
+            if (options != null && options.hasKey("databasePrefix"))
+                databasePrefix = options.getString("databasePrefix");
+
+            Boolean isPull = null;
+            if (options != null && options.hasKey("type"))
+                isPull = isPull(options.getString("type"));
+
+            List<Replication> replications = databases.findReplications(databasePrefix, isPull);
+            WritableArray statuses = Arguments.createArray();
+            for (Replication replication : replications) {
+                Replication.ReplicationStatus previousStatus = replication.getStatus();
+                switch (action) {
+                    case "suspend":
+                        replication.goOffline();
+                        break;
+                    case "resume":
+                        replication.goOnline();
+                        break;
+                    case "stop":
+                        replication.stop();
+                        forgetReplication(replication);
+                        break;
+                }
+
+                WritableMap status = Arguments.createMap();
+                status.putString("databaseName", replication.getLocalDatabase().getName());
+                status.putString("type", replication.isPull() ? "pull" : "push");
+                status.putString("remoteUrl", replication.getRemoteUrl().toExternalForm());
+                // the actions take effect asynchronously, so report the state that was asked for; the actual
+                // transition follows as a replicationChanged event
+                status.putString("previousStatus", previousStatus.name());
+                status.putBoolean("suspended", action.equals("suspend"));
+                status.putBoolean("stopped", action.equals("stop"));
+                statuses.pushMap(status);
             }
+            Log.i(TAG, action + " applied to " + replications.size() + " replications");
 
-            promise.resolve(null);
+            WritableMap event = Arguments.createMap();
+            event.putString("action", action);
+            event.putInt("count", replications.size());
+            event.putArray("replications", statuses);
+            context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit("replicationsChanged", event);
+
+            promise.resolve(replications.size());
         } catch (Exception e) {
-            promise.reject("cbl error", "Failed to stopContinuousReplication", e);
+            promise.reject("cbl error", "Failed to " + action + " replications", e);
+        }
+    }
+
+    /**
+     * The options a replication was started with, compared to tell a repeated call from one that changes it.
+     */
+    private static Map<String, Object> replicationSettings(ReadableMap options) {
+        Map<String, Object> settings = new HashMap<>();
+        if (options.hasKey("sessionId"))
+            settings.put("sessionId", options.getString("sessionId"));
+        if (options.hasKey("cookieName"))
+            settings.put("cookieName", options.getString("cookieName"));
+        if (options.hasKey("secure"))
+            settings.put("secure", options.getBoolean("secure"));
+        settings.put("continuous", !options.hasKey("continuous") || options.getBoolean("continuous"));
+        if (options.hasKey("filter"))
+            settings.put("filter", options.getString("filter"));
+        if (options.hasKey("filterParams"))
+            settings.put("filterParams", convertMapToProperties(options.getMap("filterParams")));
+        if (options.hasKey("channels"))
+            settings.put("channels", stringList(options.getArray("channels")));
+        if (options.hasKey("documentIDs"))
+            settings.put("documentIDs", stringList(options.getArray("documentIDs")));
+        if (options.hasKey("headers"))
+            settings.put("headers", convertMapToProperties(options.getMap("headers")));
+        return settings;
+    }
+
+    private static List<String> stringList(ReadableArray array) {
+        List<String> strings = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            strings.add(array.getString(i));
         }
+        return strings;
+    }
+
+    private void forgetReplication(Replication replication) {
+        replication.removeChangeListener(this);
+        databases.unregisterReplication(replication);
+
+        // the per-key state belongs to the replication that replaced this one, if any
+        Replication current = databases.findReplication(replication.getLocalDatabase().getName(), replication.isPull(), replication.getRemoteUrl());
+        if (current != null && current != replication)
+            return;
+
+        String key = DatabaseRegistry.replicationKey(replication);
+        replicationEvents.remove(key);
+        replicationStats.remove(key);
+        replicationSettings.remove(key);
     }
 
     @Override
@@ -331,6 +710,7 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
         WritableMap nativeEvent = Arguments.createMap();
 
         Replication source = event.getSource();
+        nativeEvent.putString("databaseName", source.getLocalDatabase().getName());
         nativeEvent.putString("type", source.isPull() ? "pull" : "push");
         nativeEvent.putInt("changesCount", event.getChangeCount());
         nativeEvent.putInt("completedChangesCount", event.getCompletedChangeCount());
@@ -339,185 +719,645 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
         nativeEvent.putBoolean("suspended", !source.isRunning());
         nativeEvent.putString("lastError", event.getError() == null ? "" : event.getError().getMessage());
 
-        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit("replicationChanged", nativeEvent);
+        String key = DatabaseRegistry.replicationKey(source);
+        ReplicationStats stats = replicationStats.get(key);
+        if (stats != null)
+            stats.update(event);
+
+        replicationEvents.post(key, event.getStatus(), event.getError() != null, nativeEvent);
+
+        if (event.getStatus() == Replication.ReplicationStatus.REPLICATION_IDLE) {
+            IndexWarmer warmer = indexWarmers.get(source.getLocalDatabase().getName());
+            if (warmer != null)
+                warmer.replicationIdle();
+        }
+
+        // a stopped replication can not be restarted, let startContinuousReplication create a new one
+        if (event.getStatus() == Replication.ReplicationStatus.REPLICATION_STOPPED)
+            forgetReplication(source);
     }
 
     @ReactMethod
-    public void copyAttachment(String databaseName, String id, String attachmentName, String path, Promise promise) {
+    public void getReplicationStats(String databaseName, Promise promise) {
+        WritableArray result = Arguments.createArray();
+        for (ReplicationStats stats : replicationStats.values()) {
+            if (stats.getDatabaseName().equals(databaseName))
+                result.pushMap(stats.toMap());
+        }
+        promise.resolve(result);
+    }
+
+    @ReactMethod
+    public void getDocument(String databaseName, String docId, ReadableMap options, Promise promise) {
         try {
-            Database database = manager.getDatabase(databaseName);
+            Database database = databases.get(databaseName);
 
-            Document doc = database.getDocument(id);
-            Revision rev = doc.getCurrentRevision();
-            Attachment att = rev.getAttachment(attachmentName);
-            if (att != null) {
-                copy(att, path);
+            String rev = options != null && options.hasKey("rev") ? options.getString("rev") : null;
+
+            DocumentCache cache = documentCaches.get(databaseName);
+            Map<String, Object> properties = cache == null ? null : cache.get(docId, rev);
+            if (properties != null) {
+                resolveDocument(properties, options, promise);
+                return;
             }
-            promise.resolve(null);
+
+            long cacheEpoch = cache == null ? 0 : cache.epoch();
+            Document doc = database.getExistingDocument(docId);
+            if (doc != null) {
+                if (rev != null) {
+                    SavedRevision revision = doc.getRevision(rev);
+                    if (revision != null)
+                        properties = revision.getProperties();
+                } else {
+                    properties = doc.getProperties();
+                    if (cache != null && properties != null)
+                        cache.put(docId, properties, cacheEpoch);
+                }
+            }
+
+            resolveDocument(properties, options, promise);
         } catch (Exception e) {
-            promise.reject("cbl error", "Failed to copy attachment", e);
+            promise.reject("cbl error", "Failed to getDocument", e);
         }
     }
 
-    @ReactMethod
-    public void upload(String method, String authHeader, String sourceUri, String targetUri, String contentType, Promise promise) {
-        if (method == null || !method.toUpperCase().equals("PUT")) {
-            promise.reject("cbl error", "Bad parameter method: " + method);
+    /**
+     * Resolves with the document, or with {_file} once its JSON is larger than the fileThreshold option in bytes.
+     */
+    private void resolveDocument(Map<String, Object> properties, ReadableMap options, final Promise promise) throws IOException {
+        if (properties == null || options == null || !options.hasKey("fileThreshold")) {
+            promise.resolve(properties == null ? null : convertPropertiesToMap(properties));
             return;
         }
-        if (authHeader == null) {
-            promise.reject("cbl error", "Bad parameter authHeader");
-            return;
-        }
-        if (sourceUri == null) {
-            promise.reject("cbl error", "Bad parameter sourceUri");
+
+        final byte[] json = Manager.getObjectMapper().writeValueAsBytes(properties);
+        if (json.length <= (long) options.getDouble("fileThreshold")) {
+            promise.resolve(convertPropertiesToMap(properties));
             return;
         }
-        if (targetUri == null) {
-            promise.reject("cbl error", "Bad parameter targetUri");
-            return;
+
+        workQueues.io().execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    WritableMap result = Arguments.createMap();
+                    result.putMap("_file", resultFiles.writeLine(json));
+                    promise.resolve(result);
+                } catch (IOException e) {
+                    promise.reject("cbl error", "Failed to write the document to a file", e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void enableDocumentCache(String databaseName, ReadableMap options, Promise promise) {
+        try {
+            Database database = databases.get(databaseName);
+
+            int maxEntries = DocumentCache.DEFAULT_MAX_ENTRIES;
+            if (options.hasKey("maxEntries"))
+                maxEntries = options.getInt("maxEntries");
+
+            long maxBytes = DocumentCache.DEFAULT_MAX_BYTES;
+            if (options.hasKey("maxBytes"))
+                maxBytes = (long) options.getDouble("maxBytes");
+
+            DocumentCache cache = new DocumentCache(maxEntries, maxBytes);
+            database.addChangeListener(cache);
+            DocumentCache previous = documentCaches.put(databaseName, cache);
+            if (previous != null)
+                database.removeChangeListener(previous);
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to enableDocumentCache", e);
         }
-        if (contentType == null) {
-            promise.reject("cbl error", "Bad parameter contentType");
-            return;
+    }
+
+    @ReactMethod
+    public void disableDocumentCache(String databaseName, Promise promise) {
+        try {
+            DocumentCache cache = documentCaches.remove(databaseName);
+            if (cache != null)
+                databases.get(databaseName).removeChangeListener(cache);
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to disableDocumentCache", e);
         }
+    }
 
-        SaveAttachmentTask saveAttachmentTask = new SaveAttachmentTask(method, authHeader, sourceUri, targetUri, contentType, promise);
-        saveAttachmentTask.execute();
+    @ReactMethod
+    public void getDocumentCacheStats(String databaseName, Promise promise) {
+        DocumentCache cache = documentCaches.get(databaseName);
+        promise.resolve(cache == null ? null : cache.getStats());
     }
 
-    private class SaveAttachmentTask extends AsyncTask<URL, Integer, UploadResult> {
-        private final String method;
-        private final String authHeader;
-        private final String sourceUri;
-        private final String targetUri;
-        private final String contentType;
-        private final Promise promise;
+    @ReactMethod
+    public void putDocument(final String databaseName, final String docId, final ReadableMap properties, final Promise promise) {
+        workQueues.writer(databaseName).execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Database database = databases.get(databaseName);
 
-        private SaveAttachmentTask(String method, String authHeader, String sourceUri, String targetUri, String contentType, Promise promise) {
-            this.method = method;
-            this.authHeader = authHeader;
-            this.sourceUri = sourceUri;
-            this.targetUri = targetUri;
-            this.contentType = contentType;
-            this.promise = promise;
-        }
+                    Map<String, Object> props = convertMapToProperties(properties);
+                    if (docId != null)
+                        props.put("_id", docId);
 
-        @Override
-        protected UploadResult doInBackground(URL... params) {
-            try {
-                Log.i(TAG, "Uploading attachment '" + sourceUri + "' to '" + targetUri + "'");
+                    SavedRevision revision = saveDocument(database, props);
 
-                InputStream input;
-                if (sourceUri.startsWith("/") || sourceUri.startsWith("file:/")) {
-                    String path = sourceUri.replace("file://", "/")
-                            .replace("file:/", "/");
-                    File file = new File(path);
+                    promise.resolve(saveResult(revision.getDocument().getId(), revision.getId()));
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to putDocument", e);
+                }
+            }
+        });
+    }
 
-                    input = new FileInputStream(file);
-                } else if (sourceUri.startsWith("content://")) {
-                    input = ReactCBLite.this.context.getContentResolver().openInputStream(Uri.parse(sourceUri));
-                } else {
-                    URLConnection urlConnection = new URL(sourceUri).openConnection();
-                    input = urlConnection.getInputStream();
+    @ReactMethod
+    public void deleteDocument(final String databaseName, final String docId, final String rev, final Promise promise) {
+        workQueues.writer(databaseName).execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Database database = databases.get(databaseName);
+
+                    Document doc = database.getExistingDocument(docId);
+                    if (doc == null) {
+                        promise.reject("cbl error", "Document not found: " + docId);
+                        return;
+                    }
+
+                    Map<String, Object> props = new HashMap<>();
+                    props.put("_rev", rev == null ? doc.getCurrentRevisionId() : rev);
+                    props.put("_deleted", true);
+                    SavedRevision revision = doc.putProperties(props);
+
+                    promise.resolve(saveResult(docId, revision.getId()));
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to deleteDocument", e);
                 }
+            }
+        });
+    }
 
+    @ReactMethod
+    public void bulkDocs(final String databaseName, final ReadableArray docs, final Promise promise) {
+        workQueues.writer(databaseName).execute(promise, new Runnable() {
+            @Override
+            public void run() {
                 try {
-                    HttpURLConnection conn = (HttpURLConnection) new URL(targetUri).openConnection();
-                    conn.setRequestProperty("Content-Type", contentType);
-                    conn.setRequestProperty("Authorization", authHeader);
-                    conn.setReadTimeout(100000);
-                    conn.setConnectTimeout(100000);
-                    conn.setRequestMethod(method);
-                    conn.setDoInput(true);
-                    conn.setDoOutput(true);
-
-                    OutputStream os = conn.getOutputStream();
-                    try {
-                        byte[] buffer = new byte[1024];
-                        int bytesRead;
-                        while ((bytesRead = input.read(buffer)) != -1) {
-                            os.write(buffer, 0, bytesRead);
-                            publishProgress(bytesRead);
+                    Database database = databases.get(databaseName);
+
+                    WritableArray results = Arguments.createArray();
+                    for (int i = 0; i < docs.size(); i++) {
+                        Map<String, Object> props = convertMapToProperties(docs.getMap(i));
+                        String id = (String) props.get("_id");
+                        try {
+                            SavedRevision revision = saveDocument(database, props);
+                            results.pushMap(saveResult(revision.getDocument().getId(), revision.getId()));
+                        } catch (CouchbaseLiteException e) {
+                            WritableMap result = Arguments.createMap();
+                            result.putString("id", id);
+                            result.putInt("status", e.getCBLStatus().getCode());
+                            result.putString("error", e.getMessage());
+                            results.pushMap(result);
                         }
-                    } finally {
-                        os.close();
                     }
 
-                    int responseCode = conn.getResponseCode();
+                    promise.resolve(results);
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to bulkDocs", e);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void bulkSave(final String databaseName, final ReadableArray docs, final ReadableMap options, final Promise promise) {
+        workQueues.writer(databaseName).execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Database database = databases.get(databaseName);
+                    boolean allOrNothing = options != null && options.hasKey("allOrNothing") && options.getBoolean("allOrNothing");
+                    promise.resolve(BulkSave.save(database, docs, allOrNothing));
+                } catch (BulkSave.RolledBackException e) {
+                    promise.reject("cbl error", e.getMessage());
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to bulkSave", e);
+                }
+            }
+        });
+    }
+
+    private static SavedRevision saveDocument(Database database, Map<String, Object> props) throws CouchbaseLiteException {
+        String id = (String) props.get("_id");
+        Document doc = id == null ? database.createDocument() : database.getDocument(id);
+        return doc.putProperties(props);
+    }
+
+    private static WritableMap saveResult(String id, String rev) {
+        WritableMap result = Arguments.createMap();
+        result.putBoolean("ok", true);
+        result.putString("id", id);
+        result.putString("rev", rev);
+        return result;
+    }
 
-                    StringBuilder responseText = new StringBuilder();
-                    BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                    try {
-                        String line;
-                        while ((line = br.readLine()) != null) {
-                            responseText.append(line);
+    /**
+     * Binds the view 'design/view' to native map/reduce functions, see NativeViews for the spec.
+     */
+    @ReactMethod
+    public void setNativeView(String databaseName, String designDocName, String viewName, ReadableMap spec, Promise promise) {
+        try {
+            Database database = databases.get(databaseName);
+            NativeViews.bind(database, designDocName + "/" + viewName, convertMapToProperties(spec));
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to setNativeView", e);
+        }
+    }
+
+    @ReactMethod
+    public void queryView(final String databaseName, String designDocName, String viewName, ReadableMap options, final Promise promise) {
+        try {
+            Database database = databases.get(databaseName);
+
+            Map<String, Object> queryOptions = options == null ? null : convertMapToProperties(options);
+            View view = ViewQueries.getView(database, designDocName, viewName);
+            final QueryEnumerator rows = ViewQueries.createQuery(view, queryOptions).run();
+
+            if (options != null && options.hasKey("fileThreshold")) {
+                final long fileThreshold = (long) options.getDouble("fileThreshold");
+                final int pageSize = ViewQueries.pageSize(queryOptions);
+                workQueues.io().execute(promise, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            WritableMap file = resultFiles.writeRows(rows, fileThreshold);
+                            if (file == null) {
+                                rows.reset();
+                                promise.resolve(nextPage(UUID.randomUUID().toString(), new QueryCursor(databaseName, rows, pageSize)));
+                                return;
+                            }
+
+                            WritableMap result = Arguments.createMap();
+                            result.putMap("_file", file);
+                            result.putInt("total_rows", rows.getCount());
+                            result.putDouble("update_seq", rows.getSequenceNumber());
+                            result.putNull("cursor");
+                            promise.resolve(result);
+                        } catch (IOException e) {
+                            promise.reject("cbl error", "Failed to write the query result to a file", e);
                         }
-                    } finally {
-                        br.close();
                     }
+                });
+                return;
+            }
 
-                    return new UploadResult(responseCode, responseText.toString());
-                } finally {
-                    input.close();
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to save attachment", e);
-                return new UploadResult(-1, "Failed to save attachment " + e.getMessage());
+            QueryCursor cursor = new QueryCursor(databaseName, rows, ViewQueries.pageSize(queryOptions));
+            promise.resolve(nextPage(UUID.randomUUID().toString(), cursor));
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to queryView", e);
+        }
+    }
+
+    /**
+     * Deletes a file written for a fileThreshold result once JS has read it.
+     */
+    @ReactMethod
+    public void deleteResultFile(String path, Promise promise) {
+        promise.resolve(resultFiles.delete(path));
+    }
+
+    @ReactMethod
+    public void nextQueryPage(String cursorId, Promise promise) {
+        QueryCursor cursor = queryCursors.get(cursorId);
+        if (cursor == null) {
+            promise.reject("cbl error", "No such query cursor: " + cursorId);
+            return;
+        }
+
+        promise.resolve(nextPage(cursorId, cursor));
+    }
+
+    @ReactMethod
+    public void closeQueryCursor(String cursorId, Promise promise) {
+        queryCursors.remove(cursorId);
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void subscribeLiveQuery(String databaseName, String designDocName, String viewName, ReadableMap options, Promise promise) {
+        try {
+            Database database = databases.get(databaseName);
+
+            Map<String, Object> queryOptions = options == null ? null : convertMapToProperties(options);
+            View view = ViewQueries.getView(database, designDocName, viewName);
+            LiveQuery liveQuery = ViewQueries.createQuery(view, queryOptions).toLiveQuery();
+
+            String subscriptionId = UUID.randomUUID().toString();
+            LiveQuerySubscription subscription = new LiveQuerySubscription(context, databaseName, subscriptionId, liveQuery);
+            liveQueries.put(subscriptionId, subscription);
+            subscription.start();
+
+            promise.resolve(subscriptionId);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to subscribeLiveQuery", e);
+        }
+    }
+
+    @ReactMethod
+    public void unsubscribeLiveQuery(String subscriptionId, Promise promise) {
+        LiveQuerySubscription subscription = liveQueries.remove(subscriptionId);
+        if (subscription != null)
+            subscription.stop();
+        promise.resolve(null);
+    }
+
+    private void stopLiveQueries(String databaseName) {
+        for (Map.Entry<String, LiveQuerySubscription> entry : liveQueries.entrySet()) {
+            if (entry.getValue().getDatabaseName().equals(databaseName) && liveQueries.remove(entry.getKey()) != null)
+                entry.getValue().stop();
+        }
+    }
+
+    private WritableMap nextPage(String cursorId, QueryCursor cursor) {
+        WritableMap page = Arguments.createMap();
+        page.putArray("rows", ViewQueries.nextPage(cursor.rows, cursor.pageSize));
+        page.putInt("total_rows", cursor.rows.getCount());
+        page.putDouble("update_seq", cursor.rows.getSequenceNumber());
+
+        if (cursor.rows.hasNext()) {
+            cursor.lastUsed = System.currentTimeMillis();
+            queryCursors.put(cursorId, cursor);
+            pruneQueryCursors();
+            page.putString("cursor", cursorId);
+        } else {
+            queryCursors.remove(cursorId);
+            page.putNull("cursor");
+        }
+        return page;
+    }
+
+    /**
+     * Drops cursors that were not read for QUERY_CURSOR_TTL_MS, then the least recently read ones beyond
+     * MAX_QUERY_CURSORS, so abandoned cursors do not hold on to their rows.
+     */
+    private void pruneQueryCursors() {
+        long expired = System.currentTimeMillis() - QUERY_CURSOR_TTL_MS;
+        String oldestId = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, QueryCursor> entry : queryCursors.entrySet()) {
+            long lastUsed = entry.getValue().lastUsed;
+            if (lastUsed < expired) {
+                queryCursors.remove(entry.getKey());
+            } else if (lastUsed < oldest) {
+                oldest = lastUsed;
+                oldestId = entry.getKey();
             }
         }
 
-        @Override
-        protected void onProgressUpdate(Integer... values) {
-            Log.d(TAG, "Uploaded", Arrays.toString(values));
+        if (queryCursors.size() > MAX_QUERY_CURSORS && oldestId != null) {
+            Log.w(TAG, "Too many open query cursors, dropping " + oldestId);
+            queryCursors.remove(oldestId);
         }
+    }
 
-        @Override
-        protected void onPostExecute(UploadResult uploadResult) {
-            int responseCode = uploadResult.statusCode;
-            WritableMap map = Arguments.createMap();
-            map.putInt("statusCode", responseCode);
+    private void closeQueryCursors(String databaseName) {
+        for (Map.Entry<String, QueryCursor> entry : queryCursors.entrySet()) {
+            if (entry.getValue().databaseName.equals(databaseName))
+                queryCursors.remove(entry.getKey());
+        }
+    }
 
-            if (responseCode == 200 || responseCode == 202) {
-                try {
-                    JSONObject jsonObject = new JSONObject(uploadResult.response);
-                    map.putMap("resp", convertJsonToMap(jsonObject));
-                    promise.resolve(map);
-                } catch (JSONException e) {
-                    promise.reject("cbl error", uploadResult.response);
-                    Log.e(TAG, "Failed to parse response from clb: " + uploadResult.response, e);
+    private static class QueryCursor {
+        public final String databaseName;
+        public final QueryEnumerator rows;
+        public final int pageSize;
+        public volatile long lastUsed;
+
+        public QueryCursor(String databaseName, QueryEnumerator rows, int pageSize) {
+            this.databaseName = databaseName;
+            this.rows = rows;
+            this.pageSize = pageSize;
+        }
+    }
+
+    @ReactMethod
+    public void startChangeFeed(String databaseName, ReadableMap options, Promise promise) {
+        try {
+            Database database = databases.get(databaseName);
+
+            int batchSize = DatabaseChangeFeed.DEFAULT_BATCH_SIZE;
+            if (options.hasKey("batchSize"))
+                batchSize = options.getInt("batchSize");
+
+            long flushInterval = DatabaseChangeFeed.DEFAULT_FLUSH_INTERVAL_MS;
+            if (options.hasKey("flushInterval"))
+                flushInterval = options.getInt("flushInterval");
+
+            long since = -1;
+            if (options.hasKey("since"))
+                since = (long) options.getDouble("since");
+
+            DatabaseChangeFeed feed = new DatabaseChangeFeed(context, database, batchSize, flushInterval);
+            DatabaseChangeFeed previous = changeFeeds.put(databaseName, feed);
+            if (previous != null)
+                previous.stop();
+            feed.start(since);
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to startChangeFeed", e);
+        }
+    }
+
+    @ReactMethod
+    public void stopChangeFeed(String databaseName, Promise promise) {
+        DatabaseChangeFeed feed = changeFeeds.remove(databaseName);
+        if (feed != null)
+            feed.stop();
+        promise.resolve(null);
+    }
+
+    /**
+     * Keeps the indexes of the views ('design/view') warm in the background, replacing any previous set for the database.
+     */
+    @ReactMethod
+    public void warmViewIndexes(String databaseName, ReadableArray views, ReadableMap options, Promise promise) {
+        try {
+            Database database = databases.get(databaseName);
+
+            List<String> viewNames = stringList(views);
+            for (String viewName : viewNames) {
+                if (viewName.indexOf('/') <= 0) {
+                    promise.reject("cbl error", "Invalid view name, expected 'design/view': " + viewName);
+                    return;
                 }
-            } else {
-                promise.reject("cbl error", uploadResult.response);
             }
+
+            int writeThreshold = IndexWarmer.DEFAULT_WRITE_THRESHOLD;
+            if (options.hasKey("writeThreshold"))
+                writeThreshold = options.getInt("writeThreshold");
+
+            long debounce = IndexWarmer.DEFAULT_DEBOUNCE_MS;
+            if (options.hasKey("debounce"))
+                debounce = options.getInt("debounce");
+
+            IndexWarmer warmer = new IndexWarmer(context, database, viewNames, writeThreshold, debounce);
+            IndexWarmer previous = indexWarmers.put(databaseName, warmer);
+            if (previous != null)
+                previous.cancel();
+            warmer.start();
+
+            if (options.hasKey("warmNow") && options.getBoolean("warmNow"))
+                warmer.schedule("manual");
+
+            promise.resolve(null);
+        } catch (Exception e) {
+            promise.reject("cbl error", "Failed to warmViewIndexes", e);
         }
     }
 
-    private static class UploadResult {
-        public final int statusCode;
-        public final String response;
+    @ReactMethod
+    public void cancelViewIndexWarming(String databaseName, Promise promise) {
+        IndexWarmer warmer = indexWarmers.remove(databaseName);
+        if (warmer != null)
+            warmer.cancel();
+        promise.resolve(null);
+    }
 
-        public UploadResult(int statusCode, String response) {
-            this.statusCode = statusCode;
-            this.response = response;
+    @ReactMethod
+    public void compactDatabase(String databaseName, Promise promise) {
+        if (compaction == null) {
+            promise.reject("cbl error", "Failed to compactDatabase, init has not been called");
+            return;
         }
+        compaction.compactNow(databaseName, promise);
+    }
+
+    @ReactMethod
+    public void getQueueStats(Promise promise) {
+        promise.resolve(workQueues.getStats());
+    }
+
+    @ReactMethod
+    public void copyAttachment(final String databaseName, final String id, final String attachmentName, final String path, final Promise promise) {
+        workQueues.io().execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Database database = databases.get(databaseName);
+
+                    Document doc = database.getDocument(id);
+                    Revision rev = doc.getCurrentRevision();
+                    Attachment att = rev.getAttachment(attachmentName);
+                    if (att != null) {
+                        AttachmentCopy.copy(att, path, new TransferProgress(context, "copy", path, att.getLength()));
+                    }
+                    promise.resolve(null);
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to copy attachment", e);
+                }
+            }
+        });
     }
 
-    private static Iterable<Replication> findContinuousReplications(Database database, boolean isPull) {
-        List<Replication> matching = new ArrayList<>();
-        for (Replication replication : database.getAllReplications()) {
-            if(!replication.isContinuous())
-                continue;
+    @ReactMethod
+    public void addAttachment(String databaseName, String docId, String name, String sourceUri, String contentType, Promise promise) {
+        WritableMap attachment = Arguments.createMap();
+        attachment.putString("name", name);
+        attachment.putString("sourceUri", sourceUri);
+        attachment.putString("contentType", contentType);
+        WritableArray attachments = Arguments.createArray();
+        attachments.pushMap(attachment);
+        addAttachments(databaseName, docId, attachments, promise);
+    }
 
-            if(isPull && replication.isPull())
-                matching.add(replication);
+    /**
+     * Streams the attachments ({name, sourceUri, contentType}) straight into the blob store and saves them
+     * as one new revision of the document.
+     */
+    @ReactMethod
+    public void addAttachments(final String databaseName, final String docId, final ReadableArray attachments, final Promise promise) {
+        for (int i = 0; i < attachments.size(); i++) {
+            ReadableMap attachment = attachments.getMap(i);
+            if (!attachment.hasKey("name") || !attachment.hasKey("sourceUri") || !attachment.hasKey("contentType")) {
+                promise.reject("cbl error", "Bad attachment at index " + i + ", name, sourceUri and contentType are required");
+                return;
+            }
+        }
 
-            if(!isPull && !replication.isPull())
-                matching.add(replication);
+        workQueues.writer(databaseName).execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                List<AttachmentSource> sources = new ArrayList<>();
+                List<TransferProgress> progresses = new ArrayList<>();
+                try {
+                    Database database = databases.get(databaseName);
+                    UnsavedRevision revision = database.getDocument(docId).createRevision();
+
+                    for (int i = 0; i < attachments.size(); i++) {
+                        ReadableMap attachment = attachments.getMap(i);
+                        String sourceUri = attachment.getString("sourceUri");
+                        AttachmentSource source = AttachmentSource.open(context.getContentResolver(), sourceUri);
+                        sources.add(source);
+
+                        TransferProgress progress = new TransferProgress(context, "attach", sourceUri, source.length);
+                        progresses.add(progress);
+                        revision.setAttachment(attachment.getString("name"), attachment.getString("contentType"), source.withProgress(progress));
+                    }
+
+                    // the sources are only read, into the blob store, while the revision is saved
+                    SavedRevision saved = revision.save();
+                    for (TransferProgress progress : progresses) {
+                        progress.finish();
+                    }
+                    promise.resolve(saveResult(docId, saved.getId()));
+                } catch (Exception e) {
+                    promise.reject("cbl error", "Failed to add attachments", e);
+                } finally {
+                    for (AttachmentSource source : sources) {
+                        source.close();
+                    }
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void upload(final String method, final String authHeader, final String sourceUri, final String targetUri, final String contentType, final Promise promise) {
+        if (method == null || !method.toUpperCase().equals("PUT")) {
+            promise.reject("cbl error", "Bad parameter method: " + method);
+            return;
+        }
+        if (authHeader == null) {
+            promise.reject("cbl error", "Bad parameter authHeader");
+            return;
+        }
+        if (sourceUri == null) {
+            promise.reject("cbl error", "Bad parameter sourceUri");
+            return;
+        }
+        if (targetUri == null) {
+            promise.reject("cbl error", "Bad parameter targetUri");
+            return;
+        }
+        if (contentType == null) {
+            promise.reject("cbl error", "Bad parameter contentType");
+            return;
         }
 
-        return matching;
+        workQueues.io().execute(promise, new Runnable() {
+            @Override
+            public void run() {
+                uploader.upload(method, authHeader, sourceUri, targetUri, contentType, promise);
+            }
+        });
     }
 
     private static boolean isPull(String pushOrPull) {
@@ -528,18 +1368,4 @@ public class ReactCBLite extends ReactContextBaseJavaModule implements Replicati
         else
             throw new IllegalStateException("invalid type: " + pushOrPull);
     }
-
-    private static void copy(Attachment att, String path) throws CouchbaseLiteException, IOException {
-        InputStream in = att.getContent();
-        try {
-            FileOutputStream out = new FileOutputStream(path);
-            try {
-                IOUtils.copy(in, out);
-            } finally {
-                out.close();
-            }
-        } finally {
-            in.close();
-        }
-    }
 }
@@ -12,12 +12,295 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * https://gist.github.com/viperwarp/2beb6bbefcc268dee7ad
+ * Converts between the bridge types (ReadableMap/WritableMap) and Couchbase Lite document properties.
+ *
+ * The property converters walk the structure with an explicit stack rather than recursing, so deeply nested
+ * documents cannot overflow the stack. Numbers coming from JS are narrowed back to Integer or Long when they
+ * hold an integral value, so documents round trip without every number turning into a Double.
+ *
+ * The JSON converters are based on https://gist.github.com/viperwarp/2beb6bbefcc268dee7ad
  */
 public class ReactNativeJson {
+    // largest integer a JS number can represent exactly
+    private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+    private static final int MAX_POOLED_KEYS = 4096;
+    private static final Map<String, String> keyPool = new ConcurrentHashMap<>();
+
+    public static WritableMap convertPropertiesToMap(Map<String, Object> properties) {
+        return (WritableMap) convertToWritable(properties);
+    }
+
+    public static WritableArray convertListToArray(List<Object> list) {
+        return (WritableArray) convertToWritable(list);
+    }
+
+    public static Map<String, Object> convertMapToProperties(ReadableMap readableMap) {
+        Map<String, Object> properties = new HashMap<>();
+        convertFromReadable(readableMap, properties);
+        return properties;
+    }
+
+    public static List<Object> convertArrayToList(ReadableArray readableArray) {
+        List<Object> list = new ArrayList<>(readableArray.size());
+        convertFromReadable(readableArray, list);
+        return list;
+    }
+
+    /**
+     * Native maps and arrays are moved into their parent when added, so each container has to be complete
+     * before it is attached. Containers are therefore built depth first and attached when their frame is popped.
+     */
+    private static Object convertToWritable(Object root) {
+        ArrayDeque<WriteFrame> stack = new ArrayDeque<>();
+        WriteFrame frame = new WriteFrame(root, null);
+
+        while (true) {
+            if (frame.advance()) {
+                Object value = frame.value;
+                if (value instanceof Map || value instanceof List) {
+                    stack.push(frame);
+                    frame = new WriteFrame(value, frame.key);
+                } else {
+                    frame.putValue(value);
+                }
+            } else {
+                WriteFrame parent = stack.poll();
+                if (parent == null)
+                    return frame.target();
+
+                parent.putContainer(frame);
+                frame = parent;
+            }
+        }
+    }
+
+    private static class WriteFrame {
+        private final String parentKey;
+        private final Iterator<Map.Entry<String, Object>> entries;
+        private final Iterator<Object> items;
+        private final WritableMap map;
+        private final WritableArray array;
+        private String key;
+        private Object value;
+
+        private WriteFrame(Object source, String parentKey) {
+            this.parentKey = parentKey;
+            if (source instanceof Map) {
+                this.entries = ((Map<String, Object>) source).entrySet().iterator();
+                this.items = null;
+                this.map = new WritableNativeMap();
+                this.array = null;
+            } else {
+                this.entries = null;
+                this.items = ((List<Object>) source).iterator();
+                this.map = null;
+                this.array = new WritableNativeArray();
+            }
+        }
+
+        private Object target() {
+            return map != null ? map : array;
+        }
+
+        private boolean advance() {
+            if (entries != null) {
+                if (!entries.hasNext())
+                    return false;
+                Map.Entry<String, Object> entry = entries.next();
+                key = entry.getKey();
+                value = entry.getValue();
+            } else {
+                if (!items.hasNext())
+                    return false;
+                value = items.next();
+            }
+            return true;
+        }
+
+        private void putContainer(WriteFrame child) {
+            if (map != null) {
+                if (child.map != null)
+                    map.putMap(child.parentKey, child.map);
+                else
+                    map.putArray(child.parentKey, child.array);
+            } else {
+                if (child.map != null)
+                    array.pushMap(child.map);
+                else
+                    array.pushArray(child.array);
+            }
+        }
+
+        private void putValue(Object value) {
+            if (map != null) {
+                if (value == null) {
+                    map.putNull(key);
+                } else if (value instanceof String) {
+                    map.putString(key, (String) value);
+                } else if (value instanceof Boolean) {
+                    map.putBoolean(key, (Boolean) value);
+                } else if (value instanceof Number) {
+                    Number number = (Number) value;
+                    if (fitsInInt(number))
+                        map.putInt(key, number.intValue());
+                    else
+                        map.putDouble(key, number.doubleValue());
+                } else {
+                    map.putString(key, value.toString());
+                }
+            } else {
+                if (value == null) {
+                    array.pushNull();
+                } else if (value instanceof String) {
+                    array.pushString((String) value);
+                } else if (value instanceof Boolean) {
+                    array.pushBoolean((Boolean) value);
+                } else if (value instanceof Number) {
+                    Number number = (Number) value;
+                    if (fitsInInt(number))
+                        array.pushInt(number.intValue());
+                    else
+                        array.pushDouble(number.doubleValue());
+                } else {
+                    array.pushString(value.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Plain java containers can be attached to their parent before they are filled, so a simple work list is enough.
+     */
+    private static void convertFromReadable(Object rootSource, Object rootTarget) {
+        ArrayDeque<Object> work = new ArrayDeque<>();
+        work.push(rootSource);
+        work.push(rootTarget);
+
+        while (!work.isEmpty()) {
+            Object target = work.pop();
+            Object source = work.pop();
+
+            if (source instanceof ReadableMap) {
+                ReadableMap readableMap = (ReadableMap) source;
+                Map<String, Object> properties = (Map<String, Object>) target;
+                ReadableMapKeySetIterator iterator = readableMap.keySetIterator();
+                while (iterator.hasNextKey()) {
+                    String key = pooledKey(iterator.nextKey());
+                    switch (readableMap.getType(key)) {
+                        case Null:
+                            properties.put(key, null);
+                            break;
+                        case Boolean:
+                            properties.put(key, readableMap.getBoolean(key));
+                            break;
+                        case Number:
+                            properties.put(key, narrowNumber(readableMap.getDouble(key)));
+                            break;
+                        case String:
+                            properties.put(key, readableMap.getString(key));
+                            break;
+                        case Map: {
+                            Map<String, Object> child = new HashMap<>();
+                            properties.put(key, child);
+                            work.push(readableMap.getMap(key));
+                            work.push(child);
+                            break;
+                        }
+                        case Array: {
+                            ReadableArray readableArray = readableMap.getArray(key);
+                            List<Object> child = new ArrayList<>(readableArray.size());
+                            properties.put(key, child);
+                            work.push(readableArray);
+                            work.push(child);
+                            break;
+                        }
+                    }
+                }
+            } else {
+                ReadableArray readableArray = (ReadableArray) source;
+                List<Object> list = (List<Object>) target;
+                int size = readableArray.size();
+                for (int i = 0; i < size; i++) {
+                    switch (readableArray.getType(i)) {
+                        case Null:
+                            list.add(null);
+                            break;
+                        case Boolean:
+                            list.add(readableArray.getBoolean(i));
+                            break;
+                        case Number:
+                            list.add(narrowNumber(readableArray.getDouble(i)));
+                            break;
+                        case String:
+                            list.add(readableArray.getString(i));
+                            break;
+                        case Map: {
+                            Map<String, Object> child = new HashMap<>();
+                            list.add(child);
+                            work.push(readableArray.getMap(i));
+                            work.push(child);
+                            break;
+                        }
+                        case Array: {
+                            ReadableArray childArray = readableArray.getArray(i);
+                            List<Object> child = new ArrayList<>(childArray.size());
+                            list.add(child);
+                            work.push(childArray);
+                            work.push(child);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Documents tend to repeat the same handful of keys, so share one String instance per key instead of
+     * keeping a fresh copy for every document converted.
+     */
+    private static String pooledKey(String key) {
+        String pooled = keyPool.get(key);
+        if (pooled != null)
+            return pooled;
+
+        if (keyPool.size() < MAX_POOLED_KEYS)
+            keyPool.put(key, key);
+        return key;
+    }
+
+    /**
+     * The bridge only carries doubles, so recover the integral type the value most likely had.
+     */
+    private static Object narrowNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) <= MAX_SAFE_INTEGER) {
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+                return (int) value;
+            return (long) value;
+        }
+        return value;
+    }
+
+    private static boolean fitsInInt(Number number) {
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte)
+            return true;
+        if (number instanceof Long) {
+            long value = number.longValue();
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+        }
+        return false;
+    }
+
     public static WritableMap convertJsonToMap(JSONObject jsonObject) throws JSONException {
         WritableMap map = new WritableNativeMap();
 
@@ -31,12 +314,16 @@ public class ReactNativeJson {
                 map.putArray(key, convertJsonToArray((JSONArray) value));
             } else if (value instanceof Boolean) {
                 map.putBoolean(key, (Boolean) value);
-            } else if (value instanceof Integer) {
-                map.putInt(key, (Integer) value);
-            } else if (value instanceof Double) {
-                map.putDouble(key, (Double) value);
+            } else if (value instanceof Number) {
+                Number number = (Number) value;
+                if (fitsInInt(number))
+                    map.putInt(key, number.intValue());
+                else
+                    map.putDouble(key, number.doubleValue());
             } else if (value instanceof String) {
                 map.putString(key, (String) value);
+            } else if (value == JSONObject.NULL) {
+                map.putNull(key);
             } else {
                 map.putString(key, value.toString());
             }
@@ -55,12 +342,16 @@ public class ReactNativeJson {
                 array.pushArray(convertJsonToArray((JSONArray) value));
             } else if (value instanceof Boolean) {
                 array.pushBoolean((Boolean) value);
-            } else if (value instanceof Integer) {
-                array.pushInt((Integer) value);
-            } else if (value instanceof Double) {
-                array.pushDouble((Double) value);
+            } else if (value instanceof Number) {
+                Number number = (Number) value;
+                if (fitsInInt(number))
+                    array.pushInt(number.intValue());
+                else
+                    array.pushDouble(number.doubleValue());
             } else if (value instanceof String) {
                 array.pushString((String) value);
+            } else if (value == JSONObject.NULL) {
+                array.pushNull();
             } else {
                 array.pushString(value.toString());
             }
@@ -81,7 +372,7 @@ public class ReactNativeJson {
                     object.put(key, readableMap.getBoolean(key));
                     break;
                 case Number:
-                    object.put(key, readableMap.getDouble(key));
+                    object.put(key, narrowNumber(readableMap.getDouble(key)));
                     break;
                 case String:
                     object.put(key, readableMap.getString(key));
@@ -102,12 +393,13 @@ public class ReactNativeJson {
         for (int i = 0; i < readableArray.size(); i++) {
             switch (readableArray.getType(i)) {
                 case Null:
+                    array.put(JSONObject.NULL);
                     break;
                 case Boolean:
                     array.put(readableArray.getBoolean(i));
                     break;
                 case Number:
-                    array.put(readableArray.getDouble(i));
+                    array.put(narrowNumber(readableArray.getDouble(i)));
                     break;
                 case String:
                     array.put(readableArray.getString(i));
@@ -0,0 +1,105 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.replicator.Replication;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces replicationChanged events so that a busy replication does not flood the bridge.
+ *
+ * Only the latest event per replication is kept and pending events are flushed at most once per interval.
+ * Status transitions and errors are flushed straight away so JS never sees them late.
+ */
+public class ReplicationEventEmitter {
+    public static final String EVENT_NAME = "replicationChanged";
+    public static final long DEFAULT_INTERVAL_MS = 250;
+
+    private final ReactContext context;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, WritableMap> pending = new LinkedHashMap<>();
+    private final Map<String, Replication.ReplicationStatus> lastStatus = new HashMap<>();
+    private long intervalMs = DEFAULT_INTERVAL_MS;
+    private long lastFlush;
+    private boolean flushScheduled;
+    private boolean shutdown;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public ReplicationEventEmitter(ReactContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param intervalMs minimum time between two flushes, 0 emits every event as it happens
+     */
+    public synchronized void setInterval(long intervalMs) {
+        this.intervalMs = Math.max(0, intervalMs);
+    }
+
+    public void post(String replicationKey, Replication.ReplicationStatus status, boolean hasError, WritableMap event) {
+        boolean flushNow;
+        synchronized (this) {
+            if (shutdown)
+                return;
+
+            pending.put(replicationKey, event);
+            Replication.ReplicationStatus previous = lastStatus.put(replicationKey, status);
+
+            long now = System.currentTimeMillis();
+            long wait = lastFlush + intervalMs - now;
+            flushNow = hasError || status != previous || wait <= 0;
+
+            if (!flushNow && !flushScheduled) {
+                flushScheduled = true;
+                scheduler.schedule(flushTask, wait, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flushNow)
+            flush();
+    }
+
+    /**
+     * Stops tracking a replication, any event still pending for it is emitted first.
+     */
+    public synchronized void remove(String replicationKey) {
+        flush();
+        lastStatus.remove(replicationKey);
+    }
+
+    /**
+     * Drops pending events and stops the flush thread, used when the module is destroyed.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        pending.clear();
+        lastStatus.clear();
+        scheduler.shutdownNow();
+    }
+
+    private synchronized void flush() {
+        flushScheduled = false;
+        lastFlush = System.currentTimeMillis();
+        if (pending.isEmpty())
+            return;
+
+        DeviceEventManagerModule.RCTDeviceEventEmitter emitter = context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        for (WritableMap event : pending.values()) {
+            emitter.emit(EVENT_NAME, event);
+        }
+        pending.clear();
+    }
+}
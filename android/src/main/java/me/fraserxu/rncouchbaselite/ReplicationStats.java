@@ -0,0 +1,96 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.replicator.Replication;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Progress metrics for a single replication, updated from its change events.
+ *
+ * Rates and intervals are exponentially weighted moving averages so they follow the current speed of the
+ * replication rather than the average since it was started.
+ */
+public class ReplicationStats {
+    private static final double SMOOTHING = 0.2;
+
+    private final String databaseName;
+    private final String type;
+    private final String remoteUrl;
+    private final long startedAt;
+
+    private long eventCount;
+    private long lastEventAt;
+    private long lastProgressAt;
+    private int changesCount;
+    private int completedChangesCount;
+    private double docsPerSecond;
+    private double averageEventIntervalMs;
+    private String lastSequence;
+    private String status;
+    private String lastError;
+
+    public ReplicationStats(Replication replication) {
+        this.databaseName = replication.getLocalDatabase().getName();
+        this.type = replication.isPull() ? "pull" : "push";
+        this.remoteUrl = replication.getRemoteUrl().toExternalForm();
+        this.startedAt = System.currentTimeMillis();
+        this.lastEventAt = startedAt;
+        this.lastProgressAt = startedAt;
+    }
+
+    public String getDatabaseName() {
+        return databaseName;
+    }
+
+    public synchronized void update(Replication.ChangeEvent event) {
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastEventAt;
+
+        if (eventCount == 0)
+            averageEventIntervalMs = elapsed;
+        else
+            averageEventIntervalMs = smooth(averageEventIntervalMs, elapsed);
+
+        int completed = event.getCompletedChangeCount();
+        if (completed > completedChangesCount) {
+            long sinceProgress = Math.max(1, now - lastProgressAt);
+            double rate = (completed - completedChangesCount) * 1000d / sinceProgress;
+            docsPerSecond = docsPerSecond == 0 ? rate : smooth(docsPerSecond, rate);
+            lastProgressAt = now;
+        }
+
+        eventCount++;
+        lastEventAt = now;
+        changesCount = event.getChangeCount();
+        completedChangesCount = completed;
+        lastSequence = event.getSource().getLastSequence();
+        status = event.getStatus().name();
+        if (event.getError() != null)
+            lastError = event.getError().getMessage();
+    }
+
+    public synchronized WritableMap toMap() {
+        long now = System.currentTimeMillis();
+
+        WritableMap map = Arguments.createMap();
+        map.putString("databaseName", databaseName);
+        map.putString("type", type);
+        map.putString("remoteUrl", remoteUrl);
+        map.putString("status", status);
+        map.putString("lastError", lastError);
+        map.putString("lastSequence", lastSequence);
+        map.putDouble("eventCount", eventCount);
+        map.putInt("changesCount", changesCount);
+        map.putInt("completedChangesCount", completedChangesCount);
+        map.putDouble("docsPerSecond", docsPerSecond);
+        map.putDouble("averageEventIntervalMs", averageEventIntervalMs);
+        map.putDouble("msSinceLastProgress", now - lastProgressAt);
+        map.putDouble("msSinceLastEvent", now - lastEventAt);
+        map.putDouble("runningForMs", now - startedAt);
+        return map;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+}
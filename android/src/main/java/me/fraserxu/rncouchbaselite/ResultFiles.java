@@ -0,0 +1,128 @@
+package me.fraserxu.rncouchbaselite;
+
+import android.content.Context;
+
+import com.couchbase.lite.Manager;
+import com.couchbase.lite.QueryEnumerator;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Writes large results to newline-delimited JSON files in the app's cache directory, so JS can read them in
+ * chunks instead of receiving them as one bridge message.
+ *
+ * Each result is described to JS as {path, rowCount, bytes}. Files stay until JS deletes them with
+ * delete(); files left over from a previous run are deleted before the first result of this run is written.
+ */
+public class ResultFiles {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte NEWLINE = '\n';
+
+    private final File directory;
+    private boolean cleaned;
+
+    public ResultFiles(Context context) {
+        this.directory = new File(context.getCacheDir(), "cbl-results");
+    }
+
+    /**
+     * Writes the remaining rows of the enumerator, one per line, once they serialize to more than thresholdBytes
+     * of JSON. Returns null if they all fit under it; the rows read are consumed either way.
+     */
+    public WritableMap writeRows(QueryEnumerator rows, long thresholdBytes) throws IOException {
+        ObjectMapper mapper = Manager.getObjectMapper();
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int rowCount = 0;
+        while (head.size() <= thresholdBytes) {
+            if (!rows.hasNext())
+                return null;
+            head.write(mapper.writeValueAsBytes(ViewQueries.rowProperties(rows.next())));
+            head.write(NEWLINE);
+            rowCount++;
+        }
+
+        File file = newFile();
+        long bytes = head.size();
+
+        boolean written = false;
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        try {
+            head.writeTo(out);
+            while (rows.hasNext()) {
+                byte[] line = mapper.writeValueAsBytes(ViewQueries.rowProperties(rows.next()));
+                out.write(line);
+                out.write(NEWLINE);
+                bytes += line.length + 1;
+                rowCount++;
+            }
+            written = true;
+        } finally {
+            out.close();
+            if (!written)
+                file.delete();
+        }
+
+        return describe(file, rowCount, bytes);
+    }
+
+    /**
+     * Writes an already serialized document as a single line.
+     */
+    public WritableMap writeLine(byte[] json) throws IOException {
+        File file = newFile();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(json);
+            out.write(NEWLINE);
+        } finally {
+            out.close();
+        }
+
+        return describe(file, 1, json.length + 1);
+    }
+
+    /**
+     * Deletes a result file; paths outside the results directory are refused.
+     */
+    public boolean delete(String path) {
+        File file = new File(path);
+        return directory.equals(file.getParentFile()) && file.delete();
+    }
+
+    public void deleteAll() {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private synchronized File newFile() throws IOException {
+        if (!cleaned) {
+            deleteAll();
+            cleaned = true;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Could not create " + directory);
+        return new File(directory, UUID.randomUUID().toString() + ".ndjson");
+    }
+
+    private static WritableMap describe(File file, int rowCount, long bytes) {
+        WritableMap result = Arguments.createMap();
+        result.putString("path", file.getAbsolutePath());
+        result.putInt("rowCount", rowCount);
+        result.putDouble("bytes", bytes);
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/**
+ * Reports the progress of an attachment transfer to JS as attachmentProgress events.
+ *
+ * Updates are throttled: an event is only emitted once the transfer has advanced by PERCENT_STEP percent
+ * or MIN_INTERVAL_MS has passed since the previous one. The final update is always emitted.
+ */
+public class TransferProgress {
+    public static final String EVENT_NAME = "attachmentProgress";
+    private static final long MIN_INTERVAL_MS = 250;
+    private static final int PERCENT_STEP = 5;
+
+    private final ReactContext context;
+    private final String type;
+    private final String taskId;
+    private final long totalBytes;
+    private long bytesTransferred;
+    private long lastEmittedBytes;
+    private long lastEmittedAt;
+
+    public TransferProgress(ReactContext context, String type, String taskId, long totalBytes) {
+        this.context = context;
+        this.type = type;
+        this.taskId = taskId;
+        this.totalBytes = totalBytes;
+    }
+
+    public void add(long bytes) {
+        bytesTransferred += bytes;
+
+        long now = System.currentTimeMillis();
+        boolean percentStep = totalBytes > 0 && (bytesTransferred - lastEmittedBytes) * 100 / totalBytes >= PERCENT_STEP;
+        if (percentStep || now - lastEmittedAt >= MIN_INTERVAL_MS)
+            emit(now);
+    }
+
+    public void finish() {
+        if (bytesTransferred != lastEmittedBytes || lastEmittedAt == 0)
+            emit(System.currentTimeMillis());
+    }
+
+    private void emit(long now) {
+        lastEmittedBytes = bytesTransferred;
+        lastEmittedAt = now;
+
+        WritableMap event = Arguments.createMap();
+        event.putString("type", type);
+        event.putString("taskId", taskId);
+        event.putDouble("bytesTransferred", bytesTransferred);
+        event.putDouble("totalBytes", totalBytes);
+
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(EVENT_NAME, event);
+    }
+}
@@ -0,0 +1,144 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.CouchbaseLiteException;
+import com.couchbase.lite.Database;
+import com.couchbase.lite.Document;
+import com.couchbase.lite.Mapper;
+import com.couchbase.lite.Query;
+import com.couchbase.lite.QueryEnumerator;
+import com.couchbase.lite.QueryRow;
+import com.couchbase.lite.Reducer;
+import com.couchbase.lite.Status;
+import com.couchbase.lite.View;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.fraserxu.rncouchbaselite.ReactNativeJson.convertPropertiesToMap;
+
+/**
+ * Builds and runs view queries natively, using the same option names as the REST _view endpoint.
+ */
+public class ViewQueries {
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    /**
+     * Returns the view 'design/view', compiling it from its design document if it has not been set up in this process yet.
+     * Views bound to native functions never use their design document.
+     */
+    public static View getView(Database database, String designDocName, String viewName) throws CouchbaseLiteException {
+        String name = designDocName + "/" + viewName;
+        View view = database.getView(name);
+        if (view.getMap() != null || NativeViews.apply(database, view))
+            return view;
+
+        Document designDoc = database.getExistingDocument("_design/" + designDocName);
+        Map<String, Object> views = designDoc == null ? null : (Map<String, Object>) designDoc.getProperties().get("views");
+        Map<String, Object> viewProps = views == null ? null : (Map<String, Object>) views.get(viewName);
+        if (viewProps == null || viewProps.get("map") == null)
+            throw new CouchbaseLiteException("No such view: " + name, Status.NOT_FOUND);
+
+        String language = viewProps.containsKey("language") ? (String) viewProps.get("language") : "javascript";
+        String mapSource = (String) viewProps.get("map");
+        String reduceSource = (String) viewProps.get("reduce");
+
+        Mapper mapper = View.getCompiler().compileMap(mapSource, language);
+        if (mapper == null)
+            throw new CouchbaseLiteException("Failed to compile map function of " + name, Status.INTERNAL_SERVER_ERROR);
+
+        Reducer reducer = null;
+        if (reduceSource != null) {
+            reducer = View.getCompiler().compileReduce(reduceSource, language);
+            if (reducer == null)
+                throw new CouchbaseLiteException("Failed to compile reduce function of " + name, Status.INTERNAL_SERVER_ERROR);
+        }
+
+        String version = Integer.toHexString((mapSource + "/" + reduceSource).hashCode());
+        view.setMapReduce(mapper, reducer, version);
+        return view;
+    }
+
+    public static Query createQuery(View view, Map<String, Object> options) {
+        Query query = view.createQuery();
+        if (options == null)
+            return query;
+
+        if (options.containsKey("descending"))
+            query.setDescending((Boolean) options.get("descending"));
+        if (options.containsKey("limit"))
+            query.setLimit(((Number) options.get("limit")).intValue());
+        if (options.containsKey("skip"))
+            query.setSkip(((Number) options.get("skip")).intValue());
+        if (options.containsKey("startkey"))
+            query.setStartKey(options.get("startkey"));
+        if (options.containsKey("endkey"))
+            query.setEndKey(options.get("endkey"));
+        if (options.containsKey("startkey_docid"))
+            query.setStartKeyDocId((String) options.get("startkey_docid"));
+        if (options.containsKey("endkey_docid"))
+            query.setEndKeyDocId((String) options.get("endkey_docid"));
+        if (options.containsKey("inclusive_end"))
+            query.setInclusiveEnd((Boolean) options.get("inclusive_end"));
+        if (options.containsKey("keys"))
+            query.setKeys((List<Object>) options.get("keys"));
+        if (options.containsKey("include_docs"))
+            query.setPrefetch((Boolean) options.get("include_docs"));
+        if (options.containsKey("reduce"))
+            query.setMapOnly(!(Boolean) options.get("reduce"));
+        if (options.containsKey("group") && (Boolean) options.get("group"))
+            query.setGroupLevel(9999);
+        if (options.containsKey("group_level"))
+            query.setGroupLevel(((Number) options.get("group_level")).intValue());
+
+        if (options.containsKey("stale")) {
+            String stale = (String) options.get("stale");
+            if ("ok".equals(stale))
+                query.setIndexUpdateMode(Query.IndexUpdateMode.NEVER);
+            else if ("update_after".equals(stale))
+                query.setIndexUpdateMode(Query.IndexUpdateMode.AFTER);
+        }
+
+        return query;
+    }
+
+    public static int pageSize(Map<String, Object> options) {
+        if (options != null && options.containsKey("pageSize"))
+            return Math.max(1, ((Number) options.get("pageSize")).intValue());
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    /**
+     * Converts up to pageSize rows from the current position of the enumerator.
+     */
+    public static WritableArray nextPage(QueryEnumerator rows, int pageSize) {
+        WritableArray page = new WritableNativeArray();
+        for (int i = 0; i < pageSize && rows.hasNext(); i++) {
+            page.pushMap(convertRowToMap(rows.next()));
+        }
+        return page;
+    }
+
+    public static WritableMap convertRowToMap(QueryRow row) {
+        return convertPropertiesToMap(rowProperties(row));
+    }
+
+    /**
+     * The row as the REST _view endpoint returns it: id, key, value and, when prefetched, doc.
+     */
+    public static Map<String, Object> rowProperties(QueryRow row) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", row.getSourceDocumentId());
+        map.put("key", row.getKey());
+        map.put("value", row.getValue());
+
+        Map<String, Object> doc = row.getDocumentProperties();
+        if (doc != null)
+            map.put("doc", doc);
+
+        return map;
+    }
+}
@@ -0,0 +1,204 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.couchbase.lite.util.Log;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A named queue of native module work running on an executor, with a depth limit and wait time metrics.
+ *
+ * Work submitted while the queue already holds maxDepth tasks (queued or running) is rejected straight away
+ * with a "cbl busy" error instead of piling up behind the work in progress.
+ */
+public class WorkQueue {
+    private static final String TAG = "ReactCBLite";
+
+    private final String name;
+    private final Executor executor;
+    private final AtomicInteger depth = new AtomicInteger();
+    private volatile int maxDepth;
+    private volatile boolean shutdown;
+    private long completed;
+    private long rejected;
+    private long totalWaitMs;
+    private long maxWaitMs;
+
+    public WorkQueue(String name, Executor executor, int maxDepth) {
+        this.name = name;
+        this.executor = executor;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Runs tasks one at a time, in submission order, on the given executor.
+     */
+    public static WorkQueue serial(String name, Executor executor, int maxDepth) {
+        return new WorkQueue(name, new SerialExecutor(executor), maxDepth);
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, maxDepth);
+    }
+
+    /**
+     * Queues the task; the promise is rejected if the queue is full or shut down, or the task throws.
+     */
+    public void execute(Promise promise, Runnable task) {
+        if (shutdown) {
+            synchronized (this) {
+                rejected++;
+            }
+            promise.reject("cbl busy", "The " + name + " queue is shut down");
+            return;
+        }
+
+        if (depth.incrementAndGet() > maxDepth) {
+            depth.decrementAndGet();
+            synchronized (this) {
+                rejected++;
+            }
+            promise.reject("cbl busy", "The " + name + " queue is full");
+            return;
+        }
+
+        try {
+            executor.execute(new QueuedTask(promise, task));
+        } catch (RejectedExecutionException e) {
+            depth.decrementAndGet();
+            synchronized (this) {
+                rejected++;
+            }
+            promise.reject("cbl busy", "The " + name + " queue is not accepting work", e);
+        }
+    }
+
+    /**
+     * Stops accepting work and rejects the tasks still waiting in a serial queue. Tasks already handed to the
+     * underlying executor are left to it; pass what its shutdownNow() returns to cancel().
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (executor instanceof SerialExecutor)
+            cancel(((SerialExecutor) executor).drain());
+    }
+
+    /**
+     * Rejects the promises of queued tasks that will never run.
+     */
+    public static void cancel(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            if (task instanceof QueuedTask)
+                ((QueuedTask) task).cancel();
+        }
+    }
+
+    public synchronized WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putInt("depth", depth.get());
+        stats.putInt("maxDepth", maxDepth);
+        stats.putDouble("completed", completed);
+        stats.putDouble("rejected", rejected);
+        stats.putDouble("averageWaitMs", completed == 0 ? 0 : (double) totalWaitMs / completed);
+        stats.putDouble("maxWaitMs", maxWaitMs);
+        return stats;
+    }
+
+    private class QueuedTask implements Runnable {
+        private final Promise promise;
+        private final Runnable task;
+        private final long queuedAt = System.currentTimeMillis();
+
+        private QueuedTask(Promise promise, Runnable task) {
+            this.promise = promise;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long waitMs = System.currentTimeMillis() - queuedAt;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unexpected failure on the " + name + " queue", e);
+                promise.reject("cbl error", e);
+            } finally {
+                depth.decrementAndGet();
+                synchronized (WorkQueue.this) {
+                    completed++;
+                    totalWaitMs += waitMs;
+                    maxWaitMs = Math.max(maxWaitMs, waitMs);
+                }
+            }
+        }
+
+        private void cancel() {
+            depth.decrementAndGet();
+            synchronized (WorkQueue.this) {
+                rejected++;
+            }
+            promise.reject("cbl busy", "The " + name + " queue was shut down before the task ran");
+        }
+    }
+
+    /**
+     * Hands one task at a time to the executor, the next one when the previous one finishes. If the executor
+     * refuses a task, e.g. because it was shut down, that task and all queued after it are cancelled.
+     */
+    private static class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final Executor executor;
+        private Runnable active;
+
+        private SerialExecutor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public synchronized void execute(Runnable task) {
+            tasks.offer(task);
+            if (active == null)
+                scheduleNext();
+        }
+
+        private synchronized List<Runnable> drain() {
+            List<Runnable> drained = new ArrayList<>(tasks);
+            tasks.clear();
+            return drained;
+        }
+
+        private synchronized void scheduleNext() {
+            final Runnable task = tasks.poll();
+            if (task == null) {
+                active = null;
+                return;
+            }
+
+            active = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            };
+            try {
+                executor.execute(active);
+            } catch (RejectedExecutionException e) {
+                active = null;
+                List<Runnable> cancelled = drain();
+                cancelled.add(0, task);
+                cancel(cancelled);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package me.fraserxu.rncouchbaselite;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executors native module work runs on, so slow operations do not hold up the module thread.
+ *
+ * - io: a bounded pool for attachment copies and uploads
+ * - writer: one serial queue per database for document writes, so writes to one database never wait on another
+ */
+public class WorkQueues {
+    public static final int DEFAULT_IO_THREADS = 3;
+    public static final int DEFAULT_MAX_QUEUE_DEPTH = 1000;
+
+    private final ThreadPoolExecutor ioPool;
+    private final ExecutorService writerPool;
+    private final WorkQueue io;
+    private final Map<String, WorkQueue> writers = new ConcurrentHashMap<>();
+    private volatile int maxQueueDepth = DEFAULT_MAX_QUEUE_DEPTH;
+
+    public WorkQueues() {
+        ioPool = new ThreadPoolExecutor(DEFAULT_IO_THREADS, DEFAULT_IO_THREADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory("cbl-io"));
+        ioPool.allowCoreThreadTimeOut(true);
+        writerPool = Executors.newCachedThreadPool(threadFactory("cbl-writer"));
+        io = new WorkQueue("io", ioPool, maxQueueDepth);
+    }
+
+    public WorkQueue io() {
+        return io;
+    }
+
+    public WorkQueue writer(String databaseName) {
+        WorkQueue writer = writers.get(databaseName);
+        if (writer == null) {
+            synchronized (this) {
+                writer = writers.get(databaseName);
+                if (writer == null) {
+                    writer = WorkQueue.serial("writer " + databaseName, writerPool, maxQueueDepth);
+                    writers.put(databaseName, writer);
+                }
+            }
+        }
+        return writer;
+    }
+
+    public synchronized void setIoThreads(int threads) {
+        threads = Math.max(1, threads);
+        if (threads > ioPool.getMaximumPoolSize()) {
+            ioPool.setMaximumPoolSize(threads);
+            ioPool.setCorePoolSize(threads);
+        } else {
+            ioPool.setCorePoolSize(threads);
+            ioPool.setMaximumPoolSize(threads);
+        }
+    }
+
+    public synchronized void setMaxQueueDepth(int maxQueueDepth) {
+        this.maxQueueDepth = Math.max(1, maxQueueDepth);
+        io.setMaxDepth(this.maxQueueDepth);
+        for (WorkQueue writer : writers.values()) {
+            writer.setMaxDepth(this.maxQueueDepth);
+        }
+    }
+
+    /**
+     * Stops accepting work and rejects every task that has not started yet with a "cbl busy" error. Running writes
+     * finish; running io tasks are interrupted.
+     */
+    public void shutdown() {
+        io.shutdown();
+        for (WorkQueue writer : writers.values()) {
+            writer.shutdown();
+        }
+        WorkQueue.cancel(ioPool.shutdownNow());
+        writerPool.shutdown();
+    }
+
+    public WritableMap getStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putMap("io", io.getStats());
+
+        WritableMap writerStats = Arguments.createMap();
+        for (Map.Entry<String, WorkQueue> writer : writers.entrySet()) {
+            writerStats.putMap(writer.getKey(), writer.getValue().getStats());
+        }
+        stats.putMap("writers", writerStats);
+        return stats;
+    }
+
+    private static ThreadFactory threadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package me.fraserxu.rncouchbaselite;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LiveQuerySubscriptionTest {
+
+    @Test
+    public void duplicateEmitsGetDistinctIdentities() {
+        Map<List<Object>, Integer> emitCounts = new HashMap<>();
+        List<Object> first = LiveQuerySubscription.identity("doc1", "tag", emitCounts);
+        List<Object> second = LiveQuerySubscription.identity("doc1", "tag", emitCounts);
+        List<Object> other = LiveQuerySubscription.identity("doc2", "tag", emitCounts);
+
+        assertNotEquals(first, second);
+        assertEquals(Arrays.<Object>asList("doc1", "tag", 0), first);
+        assertEquals(Arrays.<Object>asList("doc1", "tag", 1), second);
+        assertEquals(Arrays.<Object>asList("doc2", "tag", 0), other);
+    }
+
+    @Test
+    public void identitiesAreStableAcrossResults() {
+        assertEquals(identities("doc1", "tag", "doc1", "tag", "doc2", "tag"),
+                identities("doc1", "tag", "doc1", "tag", "doc2", "tag"));
+    }
+
+    @Test
+    public void droppingOneOfTwoDuplicateEmitsRemovesOneRow() {
+        Set<List<Object>> previous = identities("doc1", "tag", "doc1", "tag");
+        Set<List<Object>> current = identities("doc1", "tag");
+
+        assertEquals(2, previous.size());
+        previous.removeAll(current);
+        assertEquals(1, previous.size());
+        assertTrue(previous.contains(Arrays.<Object>asList("doc1", "tag", 1)));
+    }
+
+    private static Set<List<Object>> identities(Object... docIdsAndKeys) {
+        Map<List<Object>, Integer> emitCounts = new HashMap<>();
+        Set<List<Object>> identities = new HashSet<>();
+        for (int i = 0; i < docIdsAndKeys.length; i += 2) {
+            identities.add(LiveQuerySubscription.identity((String) docIdsAndKeys[i], docIdsAndKeys[i + 1], emitCounts));
+        }
+        return identities;
+    }
+}